@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.benchmark;
+
+import jclp.io.ByteUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of decoding and encoding tables of primitives with {@link ByteUtils}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteUtilsBenchmark {
+    @Param({"4096", "65536"})
+    private int payloadSize;
+
+    @Param({"BIG", "LITTLE"})
+    private ByteUtils.Endian endian;
+
+    private byte[] payload;
+    private byte[] output;
+    private int[] ints;
+    private long[] longs;
+
+    @Setup
+    public void setup() {
+        payload = Payloads.random(payloadSize);
+        output = new byte[payloadSize];
+        ints = new int[payloadSize / 4];
+        longs = new long[payloadSize / 8];
+    }
+
+    @Benchmark
+    public int getUInt16() {
+        int sum = 0;
+        for (int i = 0, end = payloadSize - 1; i < end; i += 2) {
+            sum += ByteUtils.getUInt16(payload, i, endian);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int getInt32() {
+        int sum = 0;
+        for (int i = 0, end = payloadSize - 3; i < end; i += 4) {
+            sum += ByteUtils.getInt32(payload, i, endian);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long getLong() {
+        long sum = 0;
+        for (int i = 0, end = payloadSize - 7; i < end; i += 8) {
+            sum += ByteUtils.getLong(payload, i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void putInt32(Blackhole bh) {
+        for (int i = 0, end = payloadSize / 4; i < end; ++i) {
+            bh.consume(ByteUtils.putInt32(i, endian));
+        }
+    }
+
+    @Benchmark
+    public byte[] putInt32InPlace() {
+        for (int i = 0, end = payloadSize - 3; i < end; i += 4) {
+            ByteUtils.putInt32(i, output, i, endian);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public int[] getInt32s() {
+        ByteUtils.getInt32s(payload, 0, ints, 0, ints.length, endian);
+        return ints;
+    }
+
+    @Benchmark
+    public long[] getInt64s() {
+        ByteUtils.getInt64s(payload, 0, longs, 0, longs.length, endian);
+        return longs;
+    }
+
+    @Benchmark
+    public byte[] putLong() {
+        byte[] b = new byte[payloadSize];
+        for (int i = 0, end = payloadSize - 7; i < end; i += 8) {
+            ByteUtils.putLong(i, b, i);
+        }
+        return b;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.benchmark;
+
+import jclp.io.FileUtils;
+import jclp.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of copy and read operations in {@link IOUtils} and {@link FileUtils}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IOUtilsBenchmark {
+    @Param({"1024", "65536", "4194304"})
+    private int payloadSize;
+
+    @Param({"4096", "8192", "65536"})
+    private int bufferSize;
+
+    private byte[] payload;
+    private File source;
+    private File target;
+
+    @Setup
+    public void setup() throws IOException {
+        payload = Payloads.text(payloadSize);
+        source = File.createTempFile("jclp-bench", ".src");
+        target = File.createTempFile("jclp-bench", ".dst");
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            out.write(payload);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.delete();
+        target.delete();
+    }
+
+    @Benchmark
+    public long copyStream() throws IOException {
+        return IOUtils.copy(new ByteArrayInputStream(payload), new Payloads.NullOutputStream(), -1, bufferSize);
+    }
+
+    @Benchmark
+    public long copyChars() throws IOException {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8);
+        return IOUtils.copy(reader, new StringWriter(payloadSize), -1, bufferSize);
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws IOException {
+        return IOUtils.toBytes(new ByteArrayInputStream(payload));
+    }
+
+    @Benchmark
+    public byte[] toBytesSized() throws IOException {
+        return IOUtils.toBytes(new ByteArrayInputStream(payload), payloadSize);
+    }
+
+    @Benchmark
+    public String toStringUtf8() throws IOException {
+        return IOUtils.toString(new ByteArrayInputStream(payload), "UTF-8");
+    }
+
+    @Benchmark
+    public byte[] readFile() throws IOException {
+        return FileUtils.toBytes(source);
+    }
+
+    @Benchmark
+    public void copyFile() throws IOException {
+        FileUtils.copyFile(source, target, bufferSize);
+    }
+
+    @Benchmark
+    public long copyFileBuffered() throws IOException {
+        // buffered stream has no channel, so the heap buffer loop is used
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(source));
+             FileOutputStream out = new FileOutputStream(target)) {
+            return IOUtils.copy(in, out, -1, bufferSize);
+        }
+    }
+}
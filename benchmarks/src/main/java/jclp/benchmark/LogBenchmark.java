@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.benchmark;
+
+import jclp.log.Facade;
+import jclp.log.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link Log} calls when the level is disabled.
+ * <p>
+ * Run with {@code -prof gc}: {@code gc.alloc.rate.norm} of the fixed arity and supplier benchmarks
+ * should be 0 B/op, while the varargs one allocates the argument array.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:-DoEscapeAnalysis") // escape analysis would hide the varargs array
+public class LogBenchmark {
+    private static final String TAG = "LogBenchmark";
+
+    // non-constant arguments, boxed once
+    private Object arg1 = "first", arg2 = 2, arg3 = 3L, arg4 = 4.0;
+
+    private jclp.log.Level oldLevel;
+    private Facade oldFacade;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        oldLevel = Log.getLevel();
+        oldFacade = Log.getFacade();
+        Log.setFacade(new NullFacade());
+        Log.setLevel(jclp.log.Level.INFO);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Log.setLevel(oldLevel);
+        Log.setFacade(oldFacade);
+    }
+
+    @Benchmark
+    public void disabledVarargs() {
+        Log.d(TAG, "{0} {1} {2} {3} {4}", arg1, arg2, arg3, arg4, arg1);
+    }
+
+    @Benchmark
+    public void disabledFixed2() {
+        Log.d(TAG, "{0} {1}", arg1, arg2);
+    }
+
+    @Benchmark
+    public void disabledFixed4() {
+        Log.d(TAG, "{0} {1} {2} {3}", arg1, arg2, arg3, arg4);
+    }
+
+    @Benchmark
+    public void disabledSupplier() {
+        Log.d(TAG, () -> "expensive " + System.nanoTime());
+    }
+
+    @Benchmark
+    public void enabledFixed4() {
+        Log.i(TAG, "{0} {1} {2} {3}", arg1, arg2, arg3, arg4);
+    }
+
+    private static final class NullFacade implements Facade {
+        @Override
+        public void log(String tag, jclp.log.Level level, String msg) {
+        }
+
+        @Override
+        public void log(String tag, jclp.log.Level level, String format, Object arg1) {
+        }
+
+        @Override
+        public void log(String tag, jclp.log.Level level, String format, Object arg1, Object arg2) {
+        }
+
+        @Override
+        public void log(String tag, jclp.log.Level level, String format, Object... args) {
+        }
+
+        @Override
+        public void log(String tag, jclp.log.Level level, String msg, Throwable t) {
+        }
+    }
+}
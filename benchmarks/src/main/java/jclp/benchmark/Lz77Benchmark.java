@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.benchmark;
+
+import jclp.io.Lz77Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link Lz77Utils} with PalmDoc records.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Lz77Benchmark {
+    @Param({"1024", "4096"})
+    private int payloadSize;
+
+    private byte[] payload;
+    private byte[] compressed;
+    private byte[] output;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        payload = Payloads.text(payloadSize);
+        compressed = Lz77Utils.compress(payload);
+        output = new byte[payloadSize];
+        buffer = new byte[Lz77Utils.maxCompressedLength(payloadSize)];
+        if (!Arrays.equals(Lz77Utils.decompress(compressed, 0, compressed.length, payloadSize), payload)) {
+            throw new IllegalStateException("round-trip failed");
+        }
+    }
+
+    @Benchmark
+    public int compress() {
+        return Lz77Utils.compress(payload, 0, payloadSize, buffer, 0);
+    }
+
+    @Benchmark
+    public int decompress() throws IOException {
+        return Lz77Utils.decompress(compressed, 0, compressed.length, output, 0);
+    }
+
+    @Benchmark
+    public int decompressStream() throws IOException {
+        return Lz77Utils.decompress(new ByteArrayInputStream(compressed)).size();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        int n = Lz77Utils.compress(payload, 0, payloadSize, buffer, 0);
+        return Lz77Utils.decompress(buffer, 0, n, output, 0);
+    }
+}
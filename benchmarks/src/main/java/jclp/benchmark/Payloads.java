@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.benchmark;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates reproducible payloads for benchmarks.
+ */
+final class Payloads {
+    private Payloads() {
+    }
+
+    private static final String[] WORDS = {
+            "the", "book", "chapter", "of", "and", "a", "PalmDoc", "record", "text", "is", "in", "to",
+            "archive", "entry", "café", "stream", "buffer", "page", "with", "for", "on", "header"
+    };
+
+    /**
+     * Generates text-like bytes, compressible like an e-book body.
+     */
+    static byte[] text(int size) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(size + 16);
+        while (sb.length() < size) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        return Arrays.copyOf(sb.toString().getBytes(StandardCharsets.UTF_8), size);
+    }
+
+    /**
+     * Generates random bytes, not compressible.
+     */
+    static byte[] random(int size) {
+        byte[] b = new byte[size];
+        new Random(42).nextBytes(b);
+        return b;
+    }
+
+    /**
+     * Generates random positions in range [0, bound).
+     */
+    static long[] positions(int count, long bound) {
+        Random random = new Random(7);
+        long[] positions = new long[count];
+        for (int i = 0; i < count; ++i) {
+            positions[i] = (long) (random.nextDouble() * bound);
+        }
+        return positions;
+    }
+
+    static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.benchmark;
+
+import jclp.io.BufferedRandomAccessFile;
+import jclp.io.MappedRandomAccessFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of single byte access with {@link BufferedRandomAccessFile} and {@link MappedRandomAccessFile}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomAccessBenchmark {
+    private static final int OPERATIONS = 4096;
+
+    @Param({"1048576", "67108864"})
+    private int fileSize;
+
+    @Param({"12", "16"})
+    private int bufbitlen;
+
+    @Param({"1", "4", "16"})
+    private int bufcount;
+
+    private File file;
+    private RandomAccessFile raf;
+    private BufferedRandomAccessFile buffered;
+    private MappedRandomAccessFile mapped;
+    private long[] positions;
+    private long offset;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("jclp-bench", ".raf");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            byte[] chunk = Payloads.random(1 << 20);
+            for (int n = 0; n < fileSize; n += chunk.length) {
+                out.write(chunk, 0, Math.min(chunk.length, fileSize - n));
+            }
+        }
+        raf = new RandomAccessFile(file, "r");
+        buffered = new BufferedRandomAccessFile(file, "r", bufbitlen, bufcount);
+        mapped = new MappedRandomAccessFile(file, "r");
+        positions = Payloads.positions(OPERATIONS, fileSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        raf.close();
+        buffered.close();
+        mapped.close();
+        file.delete();
+    }
+
+    private long nextOffset() {
+        long start = offset;
+        offset = (offset + OPERATIONS) % (fileSize - OPERATIONS);
+        return start;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int bufferedSequential() throws IOException {
+        int sum = 0;
+        for (long pos = nextOffset(), end = pos + OPERATIONS; pos < end; ++pos) {
+            sum += buffered.read(pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int bufferedRandom() throws IOException {
+        int sum = 0;
+        for (long pos : positions) {
+            sum += buffered.read(pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int bufferedAlternating() throws IOException {
+        // header and body access pattern of e-book containers
+        int sum = 0;
+        long body = nextOffset();
+        for (int i = 0; i < OPERATIONS; i += 2) {
+            sum += buffered.read(i & 0xFF);
+            sum += buffered.read(body + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int mappedSequential() throws IOException {
+        int sum = 0;
+        for (long pos = nextOffset(), end = pos + OPERATIONS; pos < end; ++pos) {
+            sum += mapped.read(pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int mappedRandom() throws IOException {
+        int sum = 0;
+        for (long pos : positions) {
+            sum += mapped.read(pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int plainRandom() throws IOException {
+        int sum = 0;
+        for (long pos : positions) {
+            raf.seek(pos);
+            sum += raf.read();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.benchmark;
+
+import jclp.io.IOUtils;
+import jclp.io.ZLibUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+/**
+ * Benchmarks of {@link ZLibUtils}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZLibBenchmark {
+    @Param({"4096", "131072", "4194304"})
+    private int payloadSize;
+
+    @Param({"1", "6", "9"})
+    private int level;
+
+    private byte[] payload;
+    private byte[] compressed;
+
+    @Setup
+    public void setup() {
+        payload = Payloads.text(payloadSize);
+        compressed = ZLibUtils.compress(payload, level);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return ZLibUtils.compress(payload, level);
+    }
+
+    @Benchmark
+    public byte[] compressParallel() {
+        return ZLibUtils.compressParallel(payload, 0, payloadSize, level, ZLibUtils.PARALLEL_BLOCK_SIZE,
+                ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public void compressStreaming() throws IOException {
+        try (ZLibUtils.Compressor compressor = ZLibUtils.compressor(
+                IOUtils.writingFor(new Payloads.NullOutputStream()), level)) {
+            for (int off = 0; off < payloadSize; off += 4096) {
+                compressor.write(payload, off, Math.min(4096, payloadSize - off));
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] decompress() throws DataFormatException {
+        return ZLibUtils.decompress(compressed);
+    }
+}
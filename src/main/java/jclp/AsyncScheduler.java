@@ -0,0 +1,322 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp;
+
+import jclp.log.Log;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.val;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Prefetches groups of {@link AsyncTask} with a concurrency limit.
+ * <p>
+ * Tasks with higher priority run first, tasks with same priority run in order of prefetching.
+ * A task already queued or running is not queued again, and a computed task is skipped.
+ * Queue wait and latency of each task are recorded, and can be observed by a {@link Listener}.
+ */
+public class AsyncScheduler {
+    private static final String TAG = "AsyncScheduler";
+
+    /**
+     * Listener receiving metrics of each prefetched task.
+     */
+    public interface Listener {
+        /**
+         * Called in the worker thread when a task is completed.
+         *
+         * @param task           the task
+         * @param queueWaitNanos time from prefetching to start running
+         * @param latencyNanos   time of running
+         * @param error          the error when getting value, or {@code null} if succeeded
+         */
+        void onCompleted(AsyncTask<?> task, long queueWaitNanos, long latencyNanos, Throwable error);
+    }
+
+    private final ExecutorService executor;
+
+    @Getter
+    private final int maxConcurrency;
+
+    @Getter
+    @Setter
+    private volatile Listener listener;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition idle = lock.newCondition();
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Set<AsyncTask<?>> scheduled = Collections.newSetFromMap(new IdentityHashMap<AsyncTask<?>, Boolean>());
+    private int running;
+    private long sequence;
+
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder totalQueueWait = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxQueueWait = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    public AsyncScheduler(int maxConcurrency) {
+        this(AsyncTask.getDefaultExecutor(), maxConcurrency);
+    }
+
+    public AsyncScheduler(@NonNull ExecutorService executor, int maxConcurrency) {
+        Validate.require(maxConcurrency > 0, "maxConcurrency must > 0");
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public boolean prefetch(AsyncTask<?> task) {
+        return prefetch(task, 0);
+    }
+
+    /**
+     * Queues the task for computing its value in background.
+     *
+     * @param task     the task
+     * @param priority priority of the task, greater runs first
+     * @return {@literal false} if the task is computed, queued or running
+     */
+    public boolean prefetch(@NonNull AsyncTask<?> task, int priority) {
+        if (task.isDone()) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (!scheduled.add(task)) {
+                return false;
+            }
+            queue.add(new Entry(task, priority, sequence++, System.nanoTime()));
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Queues all tasks with same priority.
+     *
+     * @return number of queued tasks
+     */
+    public int prefetchAll(@NonNull Collection<? extends AsyncTask<?>> tasks, int priority) {
+        int count = 0;
+        for (val task : tasks) {
+            if (prefetch(task, priority)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes all tasks not started.
+     *
+     * @return number of removed tasks
+     */
+    public int cancelPending() {
+        lock.lock();
+        try {
+            val count = queue.size();
+            for (val entry : queue) {
+                scheduled.remove(entry.task);
+            }
+            queue.clear();
+            if (running == 0) {
+                idle.signalAll();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all queued tasks are completed.
+     *
+     * @return {@literal false} if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (running > 0 || !queue.isEmpty()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = idle.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Entry entry;
+            lock.lock();
+            try {
+                if (running >= maxConcurrency || queue.isEmpty()) {
+                    return;
+                }
+                entry = queue.poll();
+                ++running;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                executor.execute(() -> run(entry));
+            } catch (RejectedExecutionException e) {
+                Log.e(TAG, "executor rejected task", e);
+                finish(entry, System.nanoTime() - entry.queuedTime, 0, e);
+            }
+        }
+    }
+
+    private void run(Entry entry) {
+        val start = System.nanoTime();
+        Throwable error = null;
+        try {
+            entry.task.get();
+        } catch (Throwable e) {
+            Log.d(TAG, "failed to prefetch task", e);
+            error = e;
+        }
+        finish(entry, start - entry.queuedTime, System.nanoTime() - start, error);
+        drain();
+    }
+
+    private void finish(Entry entry, long queueWait, long latency, Throwable error) {
+        completedCount.increment();
+        if (error != null) {
+            failedCount.increment();
+        }
+        totalQueueWait.add(queueWait);
+        totalLatency.add(latency);
+        updateMax(maxQueueWait, queueWait);
+        updateMax(maxLatency, latency);
+        val listener = this.listener;
+        if (listener != null) {
+            try {
+                listener.onCompleted(entry.task, queueWait, latency, error);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "listener failed", e);
+            }
+        }
+        lock.lock();
+        try {
+            --running;
+            scheduled.remove(entry.task);
+            if (running == 0 && queue.isEmpty()) {
+                idle.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunningCount() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getTotalQueueWaitNanos() {
+        return totalQueueWait.sum();
+    }
+
+    public long getMaxQueueWaitNanos() {
+        return maxQueueWait.get();
+    }
+
+    public long getTotalLatencyNanos() {
+        return totalLatency.sum();
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatency.get();
+    }
+
+    @Override
+    public String toString() {
+        val completed = Math.max(1, getCompletedCount());
+        return "AsyncScheduler{maxConcurrency=" + maxConcurrency
+                + ", queued=" + getQueuedCount()
+                + ", running=" + getRunningCount()
+                + ", completed=" + getCompletedCount()
+                + ", failed=" + getFailedCount()
+                + ", avgQueueWaitUs=" + getTotalQueueWaitNanos() / completed / 1000
+                + ", avgLatencyUs=" + getTotalLatencyNanos() / completed / 1000
+                + '}';
+    }
+
+    @RequiredArgsConstructor
+    private static final class Entry implements Comparable<Entry> {
+        private final AsyncTask<?> task;
+        private final int priority;
+        private final long sequence;
+        private final long queuedTime;
+
+        @Override
+        public int compareTo(Entry o) {
+            return priority != o.priority ? Integer.compare(o.priority, priority) : Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -16,16 +16,33 @@
 
 package jclp;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import jclp.log.Log;
 import lombok.NonNull;
 import lombok.val;
 
+/**
+ * Value computed once, in caller thread or scheduled to an executor in advance.
+ * <p>
+ * Coordination uses {@code ReentrantLock} instead of monitors, so waiting virtual threads
+ * do not pin their carrier threads. {@link #schedule()} uses the default executor, which
+ * runs each task in a virtual thread when the runtime supports them.
+ *
+ * @param <V> type of the value
+ */
 public abstract class AsyncTask<V> {
     private static final String TAG = "AsyncTask";
 
@@ -33,22 +50,62 @@ public abstract class AsyncTask<V> {
 
     public final void reset() {
         processed.set(false);
+        cancelled.set(false);
+    }
+
+    /**
+     * Schedules the task to the default executor.
+     *
+     * @see #getDefaultExecutor()
+     */
+    public final void schedule() {
+        schedule(getDefaultExecutor());
     }
 
     public final void schedule(@NonNull ExecutorService executor) {
-        synchronized (this) {
+        scheduleLock.lock();
+        try {
             if (future.get() != null) {
                 Log.t(TAG, "already submitted in some thread");
                 return;
             }
             future.set(executor.submit(action));
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the task, {@link #get()} throws {@code CancellationException} until {@link #reset()}.
+     *
+     * @param mayInterruptIfRunning {@literal true} to interrupt the thread running the task
+     * @return {@literal false} if the value is already computed
+     */
+    public final boolean cancel(boolean mayInterruptIfRunning) {
+        if (processed.get()) {
+            return false;
+        }
+        cancelled.set(true);
+        val future = this.future.getAndSet(null);
+        if (future != null) {
+            future.cancel(mayInterruptIfRunning);
         }
+        return true;
+    }
+
+    public final boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public final boolean isDone() {
+        return processed.get();
     }
 
     public final V get() throws Exception {
         if (processed.get()) {
             return value;
         }
+        ensureNotCancelled();
         val future = this.future.get();
         if (future != null) {
             return future.get();
@@ -57,20 +114,153 @@ public abstract class AsyncTask<V> {
         }
     }
 
+    /**
+     * Gets the value, waits at most specified time.
+     * <p>
+     * If the task is not scheduled, it is scheduled to the default executor so the wait can time out.
+     *
+     * @param timeout max time to wait
+     * @param unit    unit of timeout
+     * @return the value
+     * @throws java.util.concurrent.TimeoutException if the wait timed out
+     * @throws Exception                             if occur errors when computing
+     */
+    public final V get(long timeout, @NonNull TimeUnit unit) throws Exception {
+        if (processed.get()) {
+            return value;
+        }
+        ensureNotCancelled();
+        Future<V> future = this.future.get();
+        if (future == null) {
+            schedule();
+            future = this.future.get();
+            if (future == null) { // completed and cleared
+                return get();
+            }
+        }
+        return future.get(timeout, unit);
+    }
+
+    /**
+     * Returns a task computing value by applying specified function to value of this task.
+     */
+    public final <U> AsyncTask<U> thenApply(@NonNull Function<? super V, ? extends U> fn) {
+        final AsyncTask<V> source = this;
+        return new AsyncTask<U>() {
+            @Override
+            protected U handleGet() throws Exception {
+                return fn.apply(source.get());
+            }
+        };
+    }
+
+    public static <V> AsyncTask<V> of(@NonNull Callable<? extends V> callable) {
+        return new AsyncTask<V>() {
+            @Override
+            protected V handleGet() throws Exception {
+                return callable.call();
+            }
+        };
+    }
+
+    /**
+     * Returns a task that schedules all specified tasks to the default executor and collects their values.
+     *
+     * @param tasks the tasks
+     * @param <V>   type of value
+     * @return task of list of values, in order of tasks
+     */
+    public static <V> AsyncTask<List<V>> allOf(@NonNull Collection<? extends AsyncTask<? extends V>> tasks) {
+        final List<AsyncTask<? extends V>> list = new ArrayList<>(tasks);
+        return new AsyncTask<List<V>>() {
+            @Override
+            protected List<V> handleGet() throws Exception {
+                for (AsyncTask<? extends V> task : list) {
+                    if (!task.isDone()) {
+                        task.schedule();
+                    }
+                }
+                List<V> values = new ArrayList<>(list.size());
+                for (AsyncTask<? extends V> task : list) {
+                    values.add(task.get());
+                }
+                return values;
+            }
+        };
+    }
+
+    private void ensureNotCancelled() {
+        if (cancelled.get()) {
+            throw new CancellationException("task is cancelled");
+        }
+    }
+
+    private static volatile ExecutorService defaultExecutor;
+
+    /**
+     * Returns executor used by {@link #schedule()}.
+     * <p>
+     * Unless set, it's a virtual-thread-per-task executor if the runtime supports virtual threads,
+     * otherwise a cached pool of daemon threads.
+     */
+    public static ExecutorService getDefaultExecutor() {
+        val executor = defaultExecutor;
+        return executor != null ? executor : DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Sets executor used by {@link #schedule()}, {@code null} to restore the built-in one.
+     */
+    public static void setDefaultExecutor(ExecutorService executor) {
+        defaultExecutor = executor;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return DefaultExecutorHolder.VIRTUAL;
+    }
+
+    private static class DefaultExecutorHolder {
+        private static final boolean VIRTUAL;
+        private static final ExecutorService EXECUTOR;
+
+        static {
+            ExecutorService executor;
+            try {
+                executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception e) {
+                Log.t(TAG, "virtual threads are unavailable, use cached thread pool");
+                executor = null;
+            }
+            VIRTUAL = executor != null;
+            EXECUTOR = executor != null ? executor : Executors.newCachedThreadPool(r -> {
+                val thread = new Thread(r, "AsyncTask");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
     private V value = null;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock scheduleLock = new ReentrantLock();
     private final AtomicBoolean processed = new AtomicBoolean();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
     private final AtomicReference<Future<V>> future = new AtomicReference<>();
 
     private final Callable<V> action = new Callable<V>() {
         @Override
         public V call() throws Exception {
             if (!processed.get()) {
-                synchronized (this) {
+                lock.lock();
+                try {
                     if (!processed.get()) {
+                        ensureNotCancelled();
                         value = handleGet();
                         processed.set(true);
                         future.set(null);
                     }
+                } finally {
+                    lock.unlock();
                 }
             }
             return value;
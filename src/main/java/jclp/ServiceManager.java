@@ -18,8 +18,10 @@ package jclp;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
@@ -29,6 +31,12 @@ import jclp.log.Log;
 import lombok.NonNull;
 import lombok.val;
 
+/**
+ * Manager of services loaded by {@code ServiceLoader} and registered by name.
+ * <p>
+ * Lookups read an immutable name index published through a volatile field, so they take no lock
+ * and are safe while reloading. The index is rebuilt on init, reload and registration.
+ */
 public class ServiceManager<T extends NamedService> {
     private static final String TAG = "ServiceManager";
 
@@ -37,6 +45,7 @@ public class ServiceManager<T extends NamedService> {
     private ServiceLoader<T> serviceLoader;
     private Map<String, T> nameRegistry;
     private Set<T> serviceSpis;
+    private volatile Index<T> index;
 
     public ServiceManager(@NonNull Class<T> serviceType) {
         this.serviceType = serviceType;
@@ -50,8 +59,7 @@ public class ServiceManager<T extends NamedService> {
         init();
     }
 
-    protected void init() {
-        serviceSpis = new HashSet<>();
+    protected synchronized void init() {
         serviceLoader = AccessController.doPrivileged(new PrivilegedAction<ServiceLoader<T>>() {
             @Override
             public ServiceLoader<T> run() {
@@ -60,47 +68,40 @@ public class ServiceManager<T extends NamedService> {
                         : ServiceLoader.loadInstalled(serviceType);
             }
         });
-        initServices();
+        serviceSpis = initServices();
         nameRegistry = new HashMap<>();
+        index = new Index<>(serviceSpis, nameRegistry);
     }
 
-    public void reload() {
-        serviceSpis.clear();
-        nameRegistry.clear();
+    public synchronized void reload() {
         serviceLoader.reload();
-        initServices();
+        serviceSpis = initServices();
+        nameRegistry = new HashMap<>();
+        index = new Index<>(serviceSpis, nameRegistry);
     }
 
     public Set<T> getServices() {
-        val services = new HashSet<T>(serviceSpis);
-        services.addAll(nameRegistry.values());
-        return services;
+        return new HashSet<>(index.services);
     }
 
     public T getService(@NonNull String name) {
-        val service = nameRegistry.get(name);
-        if (service != null) {
-            return service;
-        }
-        for (val spi : serviceSpis) {
-            val names = spi.getNames();
-            if (names != null && names.contains(name)) {
-                return spi;
-            }
-        }
-        return null;
+        return index.names.get(name);
     }
 
-    public void registerService(@NonNull String name, T factory) {
-        nameRegistry.put(name, factory);
+    public synchronized void registerService(@NonNull String name, T factory) {
+        val registry = new HashMap<String, T>(nameRegistry);
+        registry.put(name, factory);
+        nameRegistry = registry;
+        index = new Index<>(serviceSpis, nameRegistry);
     }
 
-    private void initServices() {
+    private Set<T> initServices() {
+        val spis = new LinkedHashSet<T>();
         val it = serviceLoader.iterator();
         try {
             while (it.hasNext()) {
                 try {
-                    serviceSpis.add(it.next());
+                    spis.add(it.next());
                 } catch (ServiceConfigurationError e) {
                     Log.e(TAG, "providers.next()", e);
                 }
@@ -108,5 +109,38 @@ public class ServiceManager<T extends NamedService> {
         } catch (ServiceConfigurationError e) {
             Log.e(TAG, "providers.hasNext()", e);
         }
+        return spis;
+    }
+
+    /**
+     * Snapshot of services and their names, never modified after constructed.
+     */
+    private static final class Index<T extends NamedService> {
+        final Set<T> services;
+        final Map<String, T> names;
+
+        Index(Set<T> spis, Map<String, T> registry) {
+            val services = new LinkedHashSet<T>(spis);
+            val names = new HashMap<String, T>();
+            for (val spi : spis) {
+                val spiNames = spi.getNames();
+                if (spiNames == null) {
+                    continue;
+                }
+                for (val name : spiNames) {
+                    if (!names.containsKey(name)) { // first loaded wins
+                        names.put(name, spi);
+                    }
+                }
+            }
+            for (val e : registry.entrySet()) { // registered names take precedence
+                if (e.getValue() != null) {
+                    names.put(e.getKey(), e.getValue());
+                    services.add(e.getValue());
+                }
+            }
+            this.services = Collections.unmodifiableSet(services);
+            this.names = Collections.unmodifiableMap(names);
+        }
     }
 }
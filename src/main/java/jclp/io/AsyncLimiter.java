@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.io;
+
+import jclp.Validate;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of asynchronous operations in flight.
+ * <p>
+ * Operations over the limit are queued and started in order when running ones complete,
+ * no thread is blocked while waiting. Queued operations are started by a loop in one thread
+ * at a time, so operations completing immediately don't recurse on the stack.
+ */
+public class AsyncLimiter {
+    @Getter
+    private volatile int maxInFlight;
+
+    private int inFlight;
+
+    private boolean dispatching;
+
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+
+    public AsyncLimiter(int maxInFlight) {
+        Validate.require(maxInFlight > 0, "maxInFlight must > 0");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Changes the limit, operations in flight are still counted against the new limit.
+     *
+     * @param maxInFlight the new limit
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        Validate.require(maxInFlight > 0, "maxInFlight must > 0");
+        synchronized (pending) {
+            this.maxInFlight = maxInFlight;
+        }
+        dispatch();
+    }
+
+    /**
+     * Starts the operation now if the limit allows, otherwise when a slot is free.
+     *
+     * @param operation supplier starting the operation
+     * @param <T>       type of result
+     * @return future of the operation result
+     */
+    public <T> CompletableFuture<T> submit(@NonNull Supplier<? extends CompletableFuture<T>> operation) {
+        val result = new CompletableFuture<T>();
+        Runnable task = () -> {
+            CompletableFuture<T> future;
+            try {
+                future = operation.get();
+                if (future == null) {
+                    throw new NullPointerException("operation returned null future");
+                }
+            } catch (Throwable e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+        synchronized (pending) {
+            pending.add(task);
+        }
+        dispatch();
+        return result;
+    }
+
+    private void release() {
+        synchronized (pending) {
+            --inFlight;
+        }
+        dispatch();
+    }
+
+    /**
+     * Starts queued operations while the limit allows, unless another thread is doing it.
+     */
+    private void dispatch() {
+        synchronized (pending) {
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+        }
+        boolean stopped = false;
+        try {
+            while (true) {
+                Runnable next;
+                synchronized (pending) {
+                    if (inFlight >= maxInFlight || (next = pending.poll()) == null) {
+                        dispatching = false;
+                        stopped = true;
+                        return;
+                    }
+                    ++inFlight;
+                }
+                next.run();
+            }
+        } finally {
+            if (!stopped) { // let other threads dispatch after an unexpected error
+                synchronized (pending) {
+                    dispatching = false;
+                }
+            }
+        }
+    }
+
+    public int getInFlight() {
+        synchronized (pending) {
+            return inFlight;
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.io;
+
+/**
+ * Pool of reusable byte and char arrays for I/O operations.
+ * <p>
+ * Arrays returned by acquire methods may be longer than requested, the caller
+ * must only use the requested length.
+ */
+public interface BufferPool {
+    /**
+     * Acquires a byte array with at least specified length.
+     *
+     * @param size the minimum length
+     * @return the byte array
+     */
+    byte[] acquireBytes(int size);
+
+    /**
+     * Returns specified byte array to the pool.
+     *
+     * @param b the byte array, {@code null} is ignored
+     */
+    void releaseBytes(byte[] b);
+
+    /**
+     * Acquires a char array with at least specified length.
+     *
+     * @param size the minimum length
+     * @return the char array
+     */
+    char[] acquireChars(int size);
+
+    /**
+     * Returns specified char array to the pool.
+     *
+     * @param b the char array, {@code null} is ignored
+     */
+    void releaseChars(char[] b);
+
+    /**
+     * Gets number of acquire calls.
+     *
+     * @return the count
+     */
+    long getAcquireCount();
+
+    /**
+     * Gets number of release calls.
+     *
+     * @return the count
+     */
+    long getReleaseCount();
+
+    /**
+     * Gets number of acquire calls that allocated a new array.
+     *
+     * @return the count
+     */
+    long getMissCount();
+}
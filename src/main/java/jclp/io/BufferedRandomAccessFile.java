@@ -16,13 +16,28 @@
 
 package jclp.io;
 
+import lombok.Getter;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Random access file with a pool of cached pages.
+ * <p>
+ * The file is divided into pages of {@code 1 << bufbitlen} bytes, up to {@code bufcount} pages
+ * are cached and the least recently used one is written back (if dirty) and reused when
+ * another page is required.
+ */
 public class BufferedRandomAccessFile extends RandomAccessFile {
     private static final int DEFAULT_BUFFER_BIT_LEN = 12;
 
+    private static final int DEFAULT_BUFFER_COUNT = 4;
+
     private byte buf[];
     private int bufsize;
     private long bufmask;
@@ -36,6 +51,28 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
 
     private long initfilelen;
 
+    private int bufcount;
+    private Page page;
+    private Map<Long, Page> pages;
+
+    /**
+     * Number of page lookups found in the pool.
+     */
+    @Getter
+    private long hitCount;
+
+    /**
+     * Number of page lookups that required reading the file.
+     */
+    @Getter
+    private long missCount;
+
+    /**
+     * Number of dirty pages written to the file.
+     */
+    @Getter
+    private long writeBackCount;
+
     public BufferedRandomAccessFile(String name) throws IOException {
         this(name, "r", DEFAULT_BUFFER_BIT_LEN);
     }
@@ -61,46 +98,116 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
     }
 
     public BufferedRandomAccessFile(String name, String mode, int bufbitlen) throws IOException {
-        super(name, mode);
-        init(name, mode, bufbitlen);
+        this(name, mode, bufbitlen, DEFAULT_BUFFER_COUNT);
     }
 
     public BufferedRandomAccessFile(File file, String mode, int bufbitlen) throws IOException {
-        this(file.getPath(), mode, bufbitlen);
+        this(file.getPath(), mode, bufbitlen, DEFAULT_BUFFER_COUNT);
+    }
+
+    public BufferedRandomAccessFile(String name, String mode, int bufbitlen, int bufcount) throws IOException {
+        super(name, mode);
+        init(name, mode, bufbitlen, bufcount);
     }
 
-    private void init(String name, String mode, int bufbitlen) throws IOException {
+    public BufferedRandomAccessFile(File file, String mode, int bufbitlen, int bufcount) throws IOException {
+        this(file.getPath(), mode, bufbitlen, bufcount);
+    }
+
+    private void init(String name, String mode, int bufbitlen, int bufcount) throws IOException {
         if (bufbitlen < 0) {
             throw new IllegalArgumentException("bufbitlen size must > 0");
         }
+        if (bufcount <= 0) {
+            throw new IllegalArgumentException("bufcount must > 0");
+        }
 
         initfilelen = super.length();
         fileendpos = initfilelen - 1;
         curpos = super.getFilePointer();
 
         bufsize = 1 << bufbitlen;
-        buf = new byte[bufsize];
         bufmask = ~(bufsize - 1L);
-        bufdirty = false;
-        bufusedsize = 0;
-        bufstartpos = -1;
-        bufendpos = -1;
+        this.bufcount = bufcount;
+        pages = new LinkedHashMap<>(bufcount * 2, 0.75F, true);
+        page = new Page(new byte[bufsize]);
+        loadbuf(page);
     }
 
-    private void flushbuf() throws IOException {
-        if (bufdirty) {
-            if (super.getFilePointer() != bufstartpos) {
-                super.seek(bufstartpos);
+    private void loadbuf(Page p) {
+        page = p;
+        buf = p.buf;
+        bufstartpos = p.startpos;
+        bufendpos = p.startpos < 0 ? -1 : p.startpos + bufsize - 1;
+        bufusedsize = p.usedsize;
+        bufdirty = p.dirty;
+    }
+
+    private void savebuf() {
+        page.usedsize = bufusedsize;
+        page.dirty = bufdirty;
+    }
+
+    private void writeback(Page p) throws IOException {
+        if (p.dirty) {
+            if (super.getFilePointer() != p.startpos) {
+                super.seek(p.startpos);
             }
-            super.write(buf, 0, bufusedsize);
-            bufdirty = false;
+            super.write(p.buf, 0, p.usedsize);
+            p.dirty = false;
+            ++writeBackCount;
         }
     }
 
-    private int fillbuf() throws IOException {
-        super.seek(bufstartpos);
+    private void flushbuf() throws IOException {
+        savebuf();
+        for (Page p : pages.values()) {
+            writeback(p);
+        }
         bufdirty = false;
-        return super.read(buf, 0, bufsize);
+    }
+
+    private void dropbuf() throws IOException {
+        flushbuf();
+        pages.clear();
+        page.startpos = -1;
+        page.usedsize = 0;
+        loadbuf(page);
+    }
+
+    private int fillbuf(Page p) throws IOException {
+        super.seek(p.startpos);
+        p.dirty = false;
+        int n = super.read(p.buf, 0, bufsize);
+        if (n < 0) {
+            n = 0;
+        }
+        if (n < bufsize) {
+            Arrays.fill(p.buf, n, bufsize, (byte) 0);
+        }
+        return n;
+    }
+
+    private void switchbuf(long startpos) throws IOException {
+        savebuf();
+        Page p = pages.get(startpos);
+        if (p != null) {
+            ++hitCount;
+        } else {
+            ++missCount;
+            if (pages.size() < bufcount) {
+                p = pages.isEmpty() && page.startpos < 0 ? page : new Page(new byte[bufsize]);
+            } else {
+                Iterator<Page> it = pages.values().iterator();
+                p = it.next();
+                it.remove();
+                writeback(p);
+            }
+            p.startpos = startpos;
+            p.usedsize = fillbuf(p);
+            pages.put(startpos, p);
+        }
+        loadbuf(p);
     }
 
     public int read(long pos) throws IOException {
@@ -108,7 +215,6 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
             return -1;
         }
         if (pos < bufstartpos || pos > bufendpos) {
-            flushbuf();
             seek(pos);
 
             if (pos < bufstartpos || pos > bufendpos) {
@@ -124,30 +230,21 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
     }
 
     public void write(byte bw, long pos) throws IOException {
-
-        if (pos >= bufstartpos && pos <= bufendpos) { // write pos in buf
-            buf[(int) (pos - bufstartpos)] = bw;
-            bufdirty = true;
-
-            if (pos == fileendpos + 1) { // write pos is append pos
-                fileendpos++;
-                bufusedsize++;
-            }
-        } else { // write pos not in buf
+        if (pos < bufstartpos || pos > bufendpos) { // write pos not in buf
             seek(pos);
 
-            if (pos >= 0 && pos <= fileendpos && fileendpos != 0) { // write pos is modify file
-                buf[(int) (pos - bufstartpos)] = bw;
-
-            } else if (pos == 0 && fileendpos == 0 || pos == fileendpos + 1) { // write pos is append
-                // pos
-                buf[0] = bw;
-                fileendpos++;
-                bufusedsize = 1;
-            } else {
+            if (pos < bufstartpos || pos > bufendpos) { // write pos is neither in file nor append pos
                 throw new IndexOutOfBoundsException();
             }
-            bufdirty = true;
+        }
+        int off = (int) (pos - bufstartpos);
+        buf[off] = bw;
+        bufdirty = true;
+        if (off >= bufusedsize) {
+            bufusedsize = off + 1;
+        }
+        if (pos > fileendpos) { // write pos is append pos
+            fileendpos = pos;
         }
         curpos = pos;
     }
@@ -157,13 +254,13 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
 
         long writeendpos = curpos + len - 1;
 
-        if (writeendpos <= bufendpos) { // b[] in cur buf
+        if (curpos >= bufstartpos && writeendpos <= bufendpos) { // b[] in cur buf
             System.arraycopy(b, off, buf, (int) (curpos - bufstartpos), len);
             bufdirty = true;
-            bufusedsize = (int) (writeendpos - bufstartpos + 1);// (int)(this.curpos - this.bufstartpos + len
-            // - 1);
+            bufusedsize = Math.max(bufusedsize, (int) (writeendpos - bufstartpos + 1));
 
         } else { // b[] not in cur buf
+            dropbuf();
             super.seek(curpos);
             super.write(b, off, len);
         }
@@ -180,7 +277,7 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
 
         long readendpos = curpos + len - 1;
 
-        if (readendpos <= bufendpos && readendpos <= fileendpos) { // read in buf
+        if (curpos >= bufstartpos && readendpos <= bufendpos && readendpos <= fileendpos) { // read in buf
             System.arraycopy(buf, (int) (curpos - bufstartpos), b, off, len);
         } else { // read b[] size > buf[]
 
@@ -188,8 +285,12 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
                 len = (int) (length() - curpos + 1);
             }
 
+            flushbuf();
             super.seek(curpos);
             len = super.read(b, off, len);
+            if (len < 0) {
+                return len;
+            }
             readendpos = curpos + len - 1;
         }
         seek(readendpos + 1);
@@ -224,20 +325,9 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
     @Override
     public void seek(long pos) throws IOException {
         if (pos < bufstartpos || pos > bufendpos) { // seek pos not in buf
-            flushbuf();
-
-            if (pos >= 0 && pos <= fileendpos && fileendpos != 0) { // seek pos in file (file length >
-                // 0)
-                bufstartpos = pos & bufmask;
-                bufusedsize = fillbuf();
-
-            } else if (pos == 0 && fileendpos == 0 || pos == fileendpos + 1) { // seek pos is append
-                // pos
-
-                bufstartpos = pos;
-                bufusedsize = 0;
+            if (pos >= 0 && pos <= fileendpos + 1) { // seek pos in file or is append pos
+                switchbuf(pos & bufmask);
             }
-            bufendpos = bufstartpos + bufsize - 1;
         }
         curpos = pos;
     }
@@ -249,10 +339,11 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
 
     @Override
     public void setLength(long newLength) throws IOException {
+        dropbuf();
         if (newLength > 0) {
             fileendpos = newLength - 1;
         } else {
-            fileendpos = 0;
+            fileendpos = -1;
         }
         super.setLength(newLength);
     }
@@ -274,4 +365,15 @@ public class BufferedRandomAccessFile extends RandomAccessFile {
         flushbuf();
         super.close();
     }
+
+    private static final class Page {
+        private final byte[] buf;
+        private long startpos = -1;
+        private int usedsize;
+        private boolean dirty;
+
+        private Page(byte[] buf) {
+            this.buf = buf;
+        }
+    }
 }
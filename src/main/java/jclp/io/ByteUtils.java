@@ -18,11 +18,19 @@ package jclp.io;
 
 import lombok.NonNull;
 import lombok.Value;
+import lombok.val;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Utility class for byte operations.
  * <p>
  * This class contains a number of static methods perform byte operations.
+ * <p>
+ * Methods taking a {@code byte[]} or {@code ByteBuffer} with an index read and write in place
+ * without allocation, bulk variants ({@code getInt32s}, {@code putInt64s}, etc.) decode or encode
+ * a whole table in one call.
  */
 public final class ByteUtils {
 
@@ -62,14 +70,22 @@ public final class ByteUtils {
 
     public static byte[] putUInt16(int x, Endian endian) {
         byte[] ret = new byte[2];
+        putUInt16(x, ret, 0, endian);
+        return ret;
+    }
+
+    public static void putInt16(short x, byte[] b, int index, Endian endian) {
+        putUInt16(x, b, index, endian);
+    }
+
+    public static void putUInt16(int x, byte[] b, int index, Endian endian) {
         if (endian == Endian.BIG) {
-            ret[0] = (byte) (x >> 8);
-            ret[1] = (byte) (x);
+            b[index] = (byte) (x >> 8);
+            b[index + 1] = (byte) x;
         } else {
-            ret[1] = (byte) (x >> 8);
-            ret[0] = (byte) x;
+            b[index + 1] = (byte) (x >> 8);
+            b[index] = (byte) x;
         }
-        return ret;
     }
 
     public static byte[] putInt32(int x) {
@@ -86,18 +102,36 @@ public final class ByteUtils {
 
     public static byte[] putUInt32(long x, Endian endian) {
         byte[] ret = new byte[4];
+        putInt32((int) x, ret, 0, endian);
+        return ret;
+    }
+
+    public static void putInt32(int x, byte[] b, int index, Endian endian) {
         if (endian == Endian.BIG) {
-            ret[0] = (byte) (x >> 24);
-            ret[1] = (byte) (x >> 16);
-            ret[2] = (byte) (x >> 8);
-            ret[3] = (byte) x;
+            b[index] = (byte) (x >> 24);
+            b[index + 1] = (byte) (x >> 16);
+            b[index + 2] = (byte) (x >> 8);
+            b[index + 3] = (byte) x;
         } else {
-            ret[3] = (byte) (x >> 24);
-            ret[2] = (byte) (x >> 16);
-            ret[1] = (byte) (x >> 8);
-            ret[0] = (byte) x;
+            b[index + 3] = (byte) (x >> 24);
+            b[index + 2] = (byte) (x >> 16);
+            b[index + 1] = (byte) (x >> 8);
+            b[index] = (byte) x;
+        }
+    }
+
+    public static void putUInt32(long x, byte[] b, int index, Endian endian) {
+        putInt32((int) x, b, index, endian);
+    }
+
+    public static void putInt64(long x, byte[] b, int index, Endian endian) {
+        if (endian == Endian.BIG) {
+            putInt32((int) (x >>> 32), b, index, Endian.BIG);
+            putInt32((int) x, b, index + 4, Endian.BIG);
+        } else {
+            putInt32((int) x, b, index, Endian.LITTLE);
+            putInt32((int) (x >>> 32), b, index + 4, Endian.LITTLE);
         }
-        return ret;
     }
 
     public static byte getInt8(byte[] b, int index) {
@@ -154,6 +188,14 @@ public final class ByteUtils {
         return getInt32(b, index, endian) & 0xFFFFFFFFL;
     }
 
+    public static long getInt64(byte[] b, int index, Endian endian) {
+        if (endian == Endian.BIG) {
+            return ((long) getInt32(b, index, Endian.BIG) << 32) | (getInt32(b, index + 4, Endian.BIG) & 0xFFFFFFFFL);
+        } else {
+            return ((long) getInt32(b, index + 4, Endian.LITTLE) << 32) | (getInt32(b, index, Endian.LITTLE) & 0xFFFFFFFFL);
+        }
+    }
+
     public static int getUnsignedByte(byte n) {
         return n & 0xFF;
     }
@@ -298,6 +340,172 @@ public final class ByteUtils {
         return Double.longBitsToDouble(n);
     }
 
+    /**
+     * Returns the byte order of specified endian.
+     */
+    public static ByteOrder orderOf(@NonNull Endian endian) {
+        return endian == Endian.BIG ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    // values in ByteBuffer at absolute index, the order and position of the buffer are not changed
+
+    public static short getInt16(ByteBuffer b, int index, Endian endian) {
+        val x = b.getShort(index);
+        return b.order() == orderOf(endian) ? x : Short.reverseBytes(x);
+    }
+
+    public static int getUInt16(ByteBuffer b, int index, Endian endian) {
+        return getInt16(b, index, endian) & 0xFFFF;
+    }
+
+    public static int getInt32(ByteBuffer b, int index, Endian endian) {
+        val x = b.getInt(index);
+        return b.order() == orderOf(endian) ? x : Integer.reverseBytes(x);
+    }
+
+    public static long getUInt32(ByteBuffer b, int index, Endian endian) {
+        return getInt32(b, index, endian) & 0xFFFFFFFFL;
+    }
+
+    public static long getInt64(ByteBuffer b, int index, Endian endian) {
+        val x = b.getLong(index);
+        return b.order() == orderOf(endian) ? x : Long.reverseBytes(x);
+    }
+
+    public static void putInt16(short x, ByteBuffer b, int index, Endian endian) {
+        b.putShort(index, b.order() == orderOf(endian) ? x : Short.reverseBytes(x));
+    }
+
+    public static void putUInt16(int x, ByteBuffer b, int index, Endian endian) {
+        putInt16((short) x, b, index, endian);
+    }
+
+    public static void putInt32(int x, ByteBuffer b, int index, Endian endian) {
+        b.putInt(index, b.order() == orderOf(endian) ? x : Integer.reverseBytes(x));
+    }
+
+    public static void putUInt32(long x, ByteBuffer b, int index, Endian endian) {
+        putInt32((int) x, b, index, endian);
+    }
+
+    public static void putInt64(long x, ByteBuffer b, int index, Endian endian) {
+        b.putLong(index, b.order() == orderOf(endian) ? x : Long.reverseBytes(x));
+    }
+
+    // bulk operations
+
+    private static void checkRange(int index, int count, int width, int length) {
+        if (index < 0 || count < 0 || (long) count * width > length - index) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private static void checkRange(int off, int len, int length) {
+        if (off < 0 || len < 0 || len > length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Decodes {@code len} 16-bit integers from {@code b} starting at {@code index} into {@code dst}.
+     */
+    public static void getInt16s(byte[] b, int index, short[] dst, int off, int len, Endian endian) {
+        checkRange(index, len, 2, b.length);
+        checkRange(off, len, dst.length);
+        for (int end = off + len; off < end; ++off, index += 2) {
+            dst[off] = getInt16(b, index, endian);
+        }
+    }
+
+    public static void putInt16s(short[] src, int off, int len, byte[] b, int index, Endian endian) {
+        checkRange(off, len, src.length);
+        checkRange(index, len, 2, b.length);
+        for (int end = off + len; off < end; ++off, index += 2) {
+            putUInt16(src[off], b, index, endian);
+        }
+    }
+
+    /**
+     * Decodes {@code len} 32-bit integers from {@code b} starting at {@code index} into {@code dst}.
+     */
+    public static void getInt32s(byte[] b, int index, int[] dst, int off, int len, Endian endian) {
+        checkRange(index, len, 4, b.length);
+        checkRange(off, len, dst.length);
+        for (int end = off + len; off < end; ++off, index += 4) {
+            dst[off] = getInt32(b, index, endian);
+        }
+    }
+
+    public static int[] getInt32s(byte[] b, int index, int count, Endian endian) {
+        val dst = new int[count];
+        getInt32s(b, index, dst, 0, count, endian);
+        return dst;
+    }
+
+    public static void putInt32s(int[] src, int off, int len, byte[] b, int index, Endian endian) {
+        checkRange(off, len, src.length);
+        checkRange(index, len, 4, b.length);
+        for (int end = off + len; off < end; ++off, index += 4) {
+            putInt32(src[off], b, index, endian);
+        }
+    }
+
+    /**
+     * Decodes {@code len} 64-bit integers from {@code b} starting at {@code index} into {@code dst}.
+     */
+    public static void getInt64s(byte[] b, int index, long[] dst, int off, int len, Endian endian) {
+        checkRange(index, len, 8, b.length);
+        checkRange(off, len, dst.length);
+        for (int end = off + len; off < end; ++off, index += 8) {
+            dst[off] = getInt64(b, index, endian);
+        }
+    }
+
+    public static long[] getInt64s(byte[] b, int index, int count, Endian endian) {
+        val dst = new long[count];
+        getInt64s(b, index, dst, 0, count, endian);
+        return dst;
+    }
+
+    public static void putInt64s(long[] src, int off, int len, byte[] b, int index, Endian endian) {
+        checkRange(off, len, src.length);
+        checkRange(index, len, 8, b.length);
+        for (int end = off + len; off < end; ++off, index += 8) {
+            putInt64(src[off], b, index, endian);
+        }
+    }
+
+    /**
+     * Decodes {@code len} 32-bit integers from {@code b} starting at absolute {@code index} into {@code dst}.
+     * <p>
+     * Direct buffers are copied in bulk by the JDK, the position of {@code b} is not changed.
+     */
+    public static void getInt32s(ByteBuffer b, int index, int[] dst, int off, int len, Endian endian) {
+        checkRange(index, len, 4, b.limit());
+        view(b, index, endian).asIntBuffer().get(dst, off, len);
+    }
+
+    public static void putInt32s(int[] src, int off, int len, ByteBuffer b, int index, Endian endian) {
+        checkRange(index, len, 4, b.limit());
+        view(b, index, endian).asIntBuffer().put(src, off, len);
+    }
+
+    public static void getInt64s(ByteBuffer b, int index, long[] dst, int off, int len, Endian endian) {
+        checkRange(index, len, 8, b.limit());
+        view(b, index, endian).asLongBuffer().get(dst, off, len);
+    }
+
+    public static void putInt64s(long[] src, int off, int len, ByteBuffer b, int index, Endian endian) {
+        checkRange(index, len, 8, b.limit());
+        view(b, index, endian).asLongBuffer().put(src, off, len);
+    }
+
+    private static ByteBuffer view(ByteBuffer b, int index, Endian endian) {
+        val view = b.duplicate();
+        view.position(index);
+        return view.order(orderOf(endian));
+    }
+
     /**
      * Inner type to bytes.
      */
@@ -329,6 +537,26 @@ public final class ByteUtils {
         public byte[] putUInt32(long x) {
             return ByteUtils.putUInt32(x, endian);
         }
+
+        public void putInt16(short x, byte[] b, int index) {
+            ByteUtils.putInt16(x, b, index, endian);
+        }
+
+        public void putUInt16(int x, byte[] b, int index) {
+            ByteUtils.putUInt16(x, b, index, endian);
+        }
+
+        public void putInt32(int x, byte[] b, int index) {
+            ByteUtils.putInt32(x, b, index, endian);
+        }
+
+        public void putUInt32(long x, byte[] b, int index) {
+            ByteUtils.putUInt32(x, b, index, endian);
+        }
+
+        public void putInt64(long x, byte[] b, int index) {
+            ByteUtils.putInt64(x, b, index, endian);
+        }
     }
 
     public static final Render bigRender = new Render(Endian.BIG);
@@ -365,6 +593,10 @@ public final class ByteUtils {
         public long getUInt32(byte[] b, int index) {
             return ByteUtils.getUInt32(b, index, endian);
         }
+
+        public long getInt64(byte[] b, int index) {
+            return ByteUtils.getInt64(b, index, endian);
+        }
     }
 
     public static final Parser bigParser = new Parser(Endian.BIG);
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.io;
+
+import jclp.io.ByteUtils.Endian;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static jclp.Validate.require;
+
+/**
+ * Growable byte builder backed by a chain of direct buffer segments.
+ * <p>
+ * Unlike {@link ByteBuilder}, this class is not synchronized and never copies written
+ * content when growing, a new segment is chained instead. Content can be sliced and
+ * written to channels with gathering writes without copying to heap.
+ * <p>
+ * The native memory is freed by {@link #release()}, all slices are invalid after that.
+ */
+public class DirectByteBuilder implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    @Getter
+    private final int segmentSize;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * Segment for writing, its position is the used size.
+     */
+    private ByteBuffer tail;
+
+    private int tailIndex = -1;
+
+    private long size;
+
+    private boolean released;
+
+    private final byte[] scratch = new byte[8];
+
+    public DirectByteBuilder() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public DirectByteBuilder(int segmentSize) {
+        require(segmentSize > 0, "segmentSize must > 0");
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns number of written bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns number of bytes of native memory hold by this builder.
+     */
+    public long capacity() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    private void ensureOpen() {
+        if (released) {
+            throw new IllegalStateException("builder is released");
+        }
+    }
+
+    private ByteBuffer tail() {
+        if (tail == null || !tail.hasRemaining()) {
+            ensureOpen();
+            if (++tailIndex == segments.size()) {
+                segments.add(ByteBuffer.allocateDirect(segmentSize));
+            }
+            tail = segments.get(tailIndex);
+            tail.clear();
+        }
+        return tail;
+    }
+
+    public DirectByteBuilder append(int b) {
+        tail().put((byte) b);
+        ++size;
+        return this;
+    }
+
+    public DirectByteBuilder append(@NonNull byte[] b) {
+        return append(b, 0, b.length);
+    }
+
+    public DirectByteBuilder append(@NonNull byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        size += len;
+        while (len > 0) {
+            val buf = tail();
+            val n = Math.min(len, buf.remaining());
+            buf.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+        return this;
+    }
+
+    /**
+     * Appends remaining bytes of specified buffer, the position of {@code src} is advanced to its limit.
+     */
+    public DirectByteBuilder append(@NonNull ByteBuffer src) {
+        size += src.remaining();
+        val limit = src.limit();
+        try {
+            while (src.hasRemaining()) {
+                val buf = tail();
+                src.limit(src.position() + Math.min(src.remaining(), buf.remaining()));
+                buf.put(src);
+                src.limit(limit);
+            }
+        } finally {
+            src.limit(limit);
+        }
+        return this;
+    }
+
+    public DirectByteBuilder appendInt16(int x, Endian endian) {
+        if (tail != null && tail.remaining() >= 2) {
+            ByteUtils.putUInt16(x, tail, tail.position(), endian);
+            tail.position(tail.position() + 2);
+            size += 2;
+            return this;
+        }
+        ByteUtils.putUInt16(x, scratch, 0, endian);
+        return append(scratch, 0, 2);
+    }
+
+    public DirectByteBuilder appendInt32(int x, Endian endian) {
+        if (tail != null && tail.remaining() >= 4) {
+            ByteUtils.putInt32(x, tail, tail.position(), endian);
+            tail.position(tail.position() + 4);
+            size += 4;
+            return this;
+        }
+        ByteUtils.putInt32(x, scratch, 0, endian);
+        return append(scratch, 0, 4);
+    }
+
+    public DirectByteBuilder appendInt64(long x, Endian endian) {
+        if (tail != null && tail.remaining() >= 8) {
+            ByteUtils.putInt64(x, tail, tail.position(), endian);
+            tail.position(tail.position() + 8);
+            size += 8;
+            return this;
+        }
+        ByteUtils.putInt64(x, scratch, 0, endian);
+        return append(scratch, 0, 8);
+    }
+
+    /**
+     * Returns read-only views of written content in range [offset, offset + length) without copying.
+     * <p>
+     * The views share content with this builder and are invalid after {@link #release()}.
+     *
+     * @param offset start offset of content
+     * @param length number of bytes
+     * @return views of content, in order
+     */
+    public ByteBuffer[] slice(long offset, long length) {
+        ensureOpen();
+        if (offset < 0 || length < 0 || length > size - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return new ByteBuffer[0];
+        }
+        val first = (int) (offset / segmentSize);
+        val last = (int) ((offset + length - 1) / segmentSize);
+        val views = new ByteBuffer[last - first + 1];
+        long pos = (long) first * segmentSize;
+        for (int i = first; i <= last; ++i, pos += segmentSize) {
+            val view = segments.get(i).asReadOnlyBuffer();
+            view.limit((int) (Math.min(offset + length, pos + segmentSize) - pos));
+            view.position((int) (Math.max(offset, pos) - pos));
+            views[i - first] = view;
+        }
+        return views;
+    }
+
+    /**
+     * Returns read-only views of all written content.
+     */
+    public ByteBuffer[] buffers() {
+        return slice(0, size);
+    }
+
+    /**
+     * Writes all content to specified channel, gathering writes are used if supported.
+     *
+     * @param ch the destination channel
+     * @return number of written bytes
+     * @throws IOException if occur I/O errors
+     */
+    public long writeTo(@NonNull WritableByteChannel ch) throws IOException {
+        val views = buffers();
+        if (ch instanceof GatheringByteChannel) {
+            val gather = (GatheringByteChannel) ch;
+            int index = 0;
+            while (index < views.length) {
+                gather.write(views, index, views.length - index);
+                while (index < views.length && !views[index].hasRemaining()) {
+                    ++index;
+                }
+            }
+        } else {
+            for (val view : views) {
+                while (view.hasRemaining()) {
+                    ch.write(view);
+                }
+            }
+        }
+        return size;
+    }
+
+    public long writeTo(@NonNull OutputStream out) throws IOException {
+        val ch = IOUtils.channelOf(out);
+        return writeTo(ch != null ? ch : Channels.newChannel(out));
+    }
+
+    /**
+     * Copies all content to a new heap array.
+     */
+    public byte[] toByteArray() {
+        if (size > IOUtils.MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("content is too large for array: " + size);
+        }
+        val b = new byte[(int) size];
+        int off = 0;
+        for (val view : buffers()) {
+            val n = view.remaining();
+            view.get(b, off, n);
+            off += n;
+        }
+        return b;
+    }
+
+    /**
+     * Discards written content, allocated segments are kept for reusing.
+     */
+    public void reset() {
+        ensureOpen();
+        tail = null;
+        tailIndex = -1;
+        size = 0;
+    }
+
+    /**
+     * Frees all native memory hold by this builder.
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (val segment : segments) {
+            MappedRandomAccessFile.unmap(segment);
+        }
+        segments.clear();
+        tail = null;
+        tailIndex = -1;
+        size = 0;
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    @Override
+    public String toString() {
+        return "DirectByteBuilder{size=" + size + ", segments=" + segments.size() + ", segmentSize=" + segmentSize + '}';
+    }
+}
@@ -16,21 +16,68 @@
 
 package jclp.io;
 
+import jclp.Validate;
 import jclp.function.Consumer;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
 import lombok.val;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 public final class FileUtils {
     private FileUtils() {
     }
 
+    /**
+     * Executor for completion handlers of asynchronous file operations, {@code null} to use the system default.
+     */
+    @Getter
+    @Setter
+    private static volatile ExecutorService asyncExecutor = null;
+
+    /**
+     * Max number of asynchronous operations in flight per device.
+     */
+    @Getter
+    private static volatile int maxInFlightPerDevice = 8;
+
+    private static final ConcurrentMap<Object, AsyncLimiter> asyncLimiters = new ConcurrentHashMap<>();
+
+    // key of the limiter shared by files whose store is unknown
+    private static final Object UNKNOWN_STORE = new Object();
+
+    private static final int MAX_CACHED_STORES = 1024;
+
+    // stores of directories, looking up a store reads the mount table on Linux
+    private static final ConcurrentMap<Path, FileStore> fileStores = new ConcurrentHashMap<>();
+
+    public static void setMaxInFlightPerDevice(int limit) {
+        Validate.require(limit > 0, "limit must > 0");
+        maxInFlightPerDevice = limit;
+        for (val limiter : asyncLimiters.values()) {
+            limiter.setMaxInFlight(limit);
+        }
+    }
+
     public static void walkDir(File dir, Consumer<File> consumer) {
         val names = dir.list();
         if (names == null) {
@@ -52,10 +99,12 @@ public final class FileUtils {
 
     /**
      * Copies source file to target file.
+     * <p>
+     * The content is transferred with {@code FileChannel} so the system can copy it without user space buffer.
      *
      * @param source     the source file
      * @param target     the target file
-     * @param bufferSize size of buffer area
+     * @param bufferSize size of buffer area, used when the channel transfer is unavailable
      * @throws IOException if occur I/O errors
      */
     public static void copyFile(File source, File target, int bufferSize) throws IOException {
@@ -104,12 +153,169 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Gets the limiter of asynchronous operations on the device storing specified file.
+     * <p>
+     * The device is looked up by directory of the file and cached, files on unknown devices
+     * share one limiter.
+     *
+     * @param path path of the file
+     * @return the limiter
+     */
+    public static AsyncLimiter asyncLimiterFor(@NonNull Path path) {
+        val file = path.toAbsolutePath();
+        val store = storeOf(file.getParent() != null ? file.getParent() : file);
+        return asyncLimiters.computeIfAbsent(store != null ? store : UNKNOWN_STORE,
+                k -> new AsyncLimiter(maxInFlightPerDevice));
+    }
+
+    private static FileStore storeOf(Path dir) {
+        FileStore store = fileStores.get(dir);
+        if (store == null) {
+            try {
+                store = Files.getFileStore(dir);
+            } catch (IOException e) {
+                return null;
+            }
+            if (fileStores.size() >= MAX_CACHED_STORES) {
+                fileStores.clear();
+            }
+            fileStores.put(dir, store);
+        }
+        return store;
+    }
+
+    /**
+     * Submits operation to both limiters, which are always acquired in the same order
+     * so operations in opposite directions never wait for each other.
+     */
+    private static <T> CompletableFuture<T> submitAsync(AsyncLimiter first, AsyncLimiter second,
+                                                        Supplier<? extends CompletableFuture<T>> operation) {
+        if (first == second) {
+            return first.submit(operation);
+        } else if (System.identityHashCode(first) > System.identityHashCode(second)) {
+            return submitAsync(second, first, operation);
+        }
+        return first.submit(() -> second.submit(operation));
+    }
+
+    private static AsynchronousFileChannel openAsync(Path path, StandardOpenOption... options) throws IOException {
+        val set = EnumSet.noneOf(StandardOpenOption.class);
+        Collections.addAll(set, options);
+        return AsynchronousFileChannel.open(path, set, asyncExecutor);
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable e) {
+        val future = new CompletableFuture<T>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * Reads all bytes of specified file asynchronously.
+     * <p>
+     * Number of reads in flight on one device is bounded by {@link #getMaxInFlightPerDevice()}.
+     *
+     * @param file the input file
+     * @return future of the bytes
+     */
+    public static CompletableFuture<byte[]> readAllAsync(@NonNull File file) {
+        val path = file.toPath();
+        return asyncLimiterFor(path).submit(() -> {
+            AsynchronousFileChannel ch = null;
+            try {
+                ch = openAsync(path, StandardOpenOption.READ);
+                val channel = ch;
+                return IOUtils.toBytesAsync(ch, 0, ch.size()).whenComplete((b, e) -> IOUtils.closeQuietly(channel));
+            } catch (IOException | RuntimeException e) {
+                IOUtils.closeQuietly(ch);
+                return failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Reads bytes of specified region in the file asynchronously.
+     *
+     * @param file     the input file
+     * @param position start position in the file
+     * @param size     size of bytes to read
+     * @return future of the bytes
+     */
+    public static CompletableFuture<byte[]> toBytesAsync(@NonNull File file, long position, long size) {
+        val path = file.toPath();
+        return asyncLimiterFor(path).submit(() -> {
+            AsynchronousFileChannel ch = null;
+            try {
+                ch = openAsync(path, StandardOpenOption.READ);
+                val channel = ch;
+                return IOUtils.toBytesAsync(ch, position, size).whenComplete((b, e) -> IOUtils.closeQuietly(channel));
+            } catch (IOException | RuntimeException e) {
+                IOUtils.closeQuietly(ch);
+                return failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Copies source file to target file asynchronously.
+     * <p>
+     * The copy is counted on both devices of source and target.
+     *
+     * @param source the source file
+     * @param target the target file
+     * @return future of number of copied bytes
+     */
+    public static CompletableFuture<Long> copyFileAsync(@NonNull File source, @NonNull File target) {
+        val path = source.toPath();
+        return submitAsync(asyncLimiterFor(path), asyncLimiterFor(target.toPath()), () -> {
+            AsynchronousFileChannel in = null, out = null;
+            try {
+                in = openAsync(path, StandardOpenOption.READ);
+                out = openAsync(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                val src = in;
+                val dst = out;
+                return IOUtils.copyAsync(in, 0, out, 0, -1, 0x10000).whenComplete((n, e) -> {
+                    IOUtils.closeQuietly(src);
+                    IOUtils.closeQuietly(dst);
+                });
+            } catch (IOException | RuntimeException e) {
+                IOUtils.closeQuietly(in);
+                IOUtils.closeQuietly(out);
+                return failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Reads all bytes of specified file.
+     *
+     * @param file the input file
+     * @return the bytes
+     * @throws IOException if occur I/O errors
+     */
+    public static byte[] toBytes(File file) throws IOException {
+        try (val in = new FileInputStream(file)) {
+            return IOUtils.toBytes(in, file.length());
+        }
+    }
+
     public static String toString(File file) throws IOException {
         return toString(file, null);
     }
 
+    /**
+     * Reads all content of specified file as string.
+     *
+     * @param file     the input file
+     * @param encoding the encoding, if {@code null} use default encoding
+     * @return the string
+     * @throws IOException if occur I/O errors
+     */
     public static String toString(File file, String encoding) throws IOException {
-        return IOUtils.toString(IOUtils.readerFor(file, encoding));
+        val b = toBytes(file);
+        return encoding != null ? new String(b, encoding) : new String(b);
     }
 
     public static List<String> toLines(File file, boolean skipEmpty) throws IOException {
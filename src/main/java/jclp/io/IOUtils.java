@@ -20,17 +20,29 @@ import jclp.log.Log;
 import jclp.CollectionUtils;
 import jclp.MiscUtils;
 import jclp.Validate;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.val;
 
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Utilities for file and I/O operations.
@@ -56,6 +68,26 @@ public final class IOUtils {
      */
     public static final int EOF = -1;
 
+    /**
+     * Max size of array that can be allocated for reading.
+     */
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Pool of buffers used by copy operations.
+     */
+    @Getter
+    @Setter
+    @NonNull
+    private static BufferPool bufferPool = new StripedBufferPool();
+
+    /**
+     * Max capacity of direct buffer cached by each thread for channel copying.
+     */
+    private static final int MAX_CACHED_DIRECT_SIZE = 1 << 20;
+
+    private static final ThreadLocal<ByteBuffer> directBuffers = new ThreadLocal<>();
+
     /**
      * Close specified {@code Closeable} quietly.
      *
@@ -70,6 +102,19 @@ public final class IOUtils {
         }
     }
 
+    /**
+     * Releases the native memory or mapping of specified direct buffer without waiting for GC.
+     * <p>
+     * The buffer must not be accessed after calling this method.
+     *
+     * @param buffer the direct or mapped buffer, not a slice or duplicate
+     */
+    public static void unmap(@NonNull ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            MappedRandomAccessFile.unmap(buffer);
+        }
+    }
+
     public static byte[] ensureLength(byte[] b, int length) {
         return b.length >= length ? b : Arrays.copyOf(b, length);
     }
@@ -100,6 +145,63 @@ public final class IOUtils {
         void flush() throws IOException;
     }
 
+    /**
+     * {@code ByteBuffer} counterpart of {@link Reading}, with scattering read.
+     */
+    public interface BufferReading {
+        int read(ByteBuffer dst) throws IOException;
+
+        long read(ByteBuffer[] dsts, int offset, int length) throws IOException;
+    }
+
+    /**
+     * {@code ByteBuffer} counterpart of {@link Writing}, with gathering write.
+     * <p>
+     * Unlike channels, all remaining bytes of the buffers are written before returning.
+     */
+    public interface BufferWriting {
+        void write(ByteBuffer src) throws IOException;
+
+        void write(ByteBuffer[] srcs, int offset, int length) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * Gets the file channel of specified input stream for zero-copy transfer.
+     * <p>
+     * Only plain {@code FileInputStream} is accepted, subclasses may override the read methods.
+     *
+     * @param in the input stream
+     * @return the channel, or {@code null} if the stream is not backed by a file
+     */
+    static FileChannel channelOf(InputStream in) {
+        return in != null && in.getClass() == FileInputStream.class ? ((FileInputStream) in).getChannel() : null;
+    }
+
+    /**
+     * Gets the file channel of specified output stream for zero-copy transfer.
+     *
+     * @param out the output stream
+     * @return the channel, or {@code null} if the stream is not backed by a file
+     */
+    static FileChannel channelOf(OutputStream out) {
+        return out != null && out.getClass() == FileOutputStream.class ? ((FileOutputStream) out).getChannel() : null;
+    }
+
+    /**
+     * Gets the file channel of specified random access file for zero-copy transfer.
+     * <p>
+     * Buffered subclasses like {@link BufferedRandomAccessFile} keep their own file pointer,
+     * so only plain {@code RandomAccessFile} is accepted.
+     *
+     * @param raf the random access file
+     * @return the channel, or {@code null} if the file cannot be transferred directly
+     */
+    static FileChannel channelOf(RandomAccessFile raf) {
+        return raf != null && raf.getClass() == RandomAccessFile.class ? raf.getChannel() : null;
+    }
+
     public static Reading readingFor(@NonNull InputStream in) {
         return new ISReading(in);
     }
@@ -116,6 +218,57 @@ public final class IOUtils {
         return new RAFWriting(raf);
     }
 
+    public static Writing writingFor(@NonNull ByteBuffer buffer) {
+        return new HeapBufferWriting(buffer);
+    }
+
+    public static BufferReading bufferReadingFor(@NonNull InputStream in) {
+        val ch = channelOf(in);
+        return new ChannelReading(ch != null ? ch : Channels.newChannel(in));
+    }
+
+    public static BufferReading bufferReadingFor(@NonNull ReadableByteChannel ch) {
+        return new ChannelReading(ch);
+    }
+
+    /**
+     * Returns a reading from specified position of the channel.
+     * <p>
+     * The reading keeps its own position and never changes position of the channel,
+     * so readings at different positions can share one channel.
+     *
+     * @param ch       the file channel
+     * @param position start position in the file
+     * @return the reading
+     */
+    public static BufferReading bufferReadingFor(@NonNull FileChannel ch, long position) {
+        Validate.require(position >= 0, "position < 0");
+        return new PositionalReading(ch, position);
+    }
+
+    public static BufferWriting bufferWritingFor(@NonNull OutputStream out) {
+        val ch = channelOf(out);
+        return new ChannelWriting(ch != null ? ch : Channels.newChannel(out), ch != null ? null : out);
+    }
+
+    public static BufferWriting bufferWritingFor(@NonNull WritableByteChannel ch) {
+        return new ChannelWriting(ch, null);
+    }
+
+    /**
+     * Returns a writing to specified position of the channel.
+     * <p>
+     * The writing keeps its own position and never changes position of the channel.
+     *
+     * @param ch       the file channel
+     * @param position start position in the file
+     * @return the writing
+     */
+    public static BufferWriting bufferWritingFor(@NonNull FileChannel ch, long position) {
+        Validate.require(position >= 0, "position < 0");
+        return new PositionalWriting(ch, position);
+    }
+
     public static long copy(InputStream in, OutputStream out, int size) throws IOException {
         return copy(in, out, size, DEFAULT_BUFFER_SIZE);
     }
@@ -131,6 +284,11 @@ public final class IOUtils {
      * @throws IOException if occur I/O error.
      */
     public static long copy(InputStream in, OutputStream out, int size, int bufferSize) throws IOException {
+        val src = channelOf(in);
+        val dst = channelOf(out);
+        if (src != null && dst != null) {
+            return copy(src, dst, size);
+        }
         return copy(readingFor(in), writingFor(out), size, bufferSize);
     }
 
@@ -149,6 +307,11 @@ public final class IOUtils {
      * @throws IOException if occur I/O error.
      */
     public static long copy(InputStream in, RandomAccessFile out, int size, int bufferSize) throws IOException {
+        val src = channelOf(in);
+        val dst = channelOf(out);
+        if (src != null && dst != null) {
+            return copy(src, dst, size);
+        }
         return copy(readingFor(in), writingFor(out), size, bufferSize);
     }
 
@@ -167,6 +330,11 @@ public final class IOUtils {
      * @throws IOException if occur I/O error.
      */
     public static long copy(RandomAccessFile in, OutputStream out, int size, int bufferSize) throws IOException {
+        val src = channelOf(in);
+        val dst = channelOf(out);
+        if (src != null && dst != null) {
+            return copy(src, dst, size);
+        }
         return copy(readingFor(in), writingFor(out), size, bufferSize);
     }
 
@@ -185,9 +353,212 @@ public final class IOUtils {
      * @throws IOException if occur I/O error.
      */
     public static long copy(RandomAccessFile in, RandomAccessFile out, int size, int bufferSize) throws IOException {
+        val src = channelOf(in);
+        val dst = channelOf(out);
+        if (src != null && dst != null) {
+            return copy(src, dst, size);
+        }
         return copy(readingFor(in), writingFor(out), size, bufferSize);
     }
 
+    /**
+     * Copies bytes from {@code FileChannel} to {@code FileChannel}.
+     * <p>
+     * The bytes are transferred by {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * which lets the operating system move them without copying through user space.
+     * Files reporting no size (like procfs or pipes) are read until EOF with a buffer.
+     * Position of both channels are advanced by the number of copied bytes.
+     *
+     * @param in   source channel
+     * @param out  destination channel
+     * @param size size of bytes to copy, <code>-1</code> to copy all
+     * @return number of copied bytes
+     * @throws IOException if occur I/O error.
+     */
+    public static long copy(@NonNull FileChannel in, @NonNull FileChannel out, long size) throws IOException {
+        return copy(in, (WritableByteChannel) out, size, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Copies bytes from {@code ReadableByteChannel} to {@code WritableByteChannel}.
+     * <p>
+     * If either end is a file channel, bytes are moved by {@code transferTo} or {@code transferFrom},
+     * otherwise a direct buffer cached by current thread is used.
+     *
+     * @param in         source channel
+     * @param out        destination channel
+     * @param size       size of bytes to copy, <code>-1</code> to copy all
+     * @param bufferSize size of buffer area
+     * @return number of copied bytes
+     * @throws IOException if occur I/O error.
+     */
+    public static long copy(@NonNull ReadableByteChannel in, @NonNull WritableByteChannel out, long size, int bufferSize)
+            throws IOException {
+        Validate.require(bufferSize > 0, "bufferSize <= 0");
+        if (in instanceof FileChannel) {
+            return copy((FileChannel) in, out, size, bufferSize);
+        } else if (out instanceof FileChannel) {
+            return copy(in, (FileChannel) out, size, bufferSize);
+        }
+        return copy(new ChannelReading(in), new ChannelWriting(out, null), size, bufferSize);
+    }
+
+    private static long copy(FileChannel in, WritableByteChannel out, long size, int bufferSize) throws IOException {
+        val position = in.position();
+        long count = in.size() - position;
+        if (size >= 0 && size < count) {
+            count = size;
+        }
+        long total = 0L;
+        while (total < count) {
+            val n = in.transferTo(position + total, count - total, out);
+            if (n <= 0) {
+                break;
+            }
+            total += n;
+        }
+        in.position(position + total);
+        if (size < 0 || total < size) { // size may be unknown (procfs, pipes), read the rest until EOF
+            total += pump(new ChannelReading(in), new ChannelWriting(out, null), size < 0 ? -1 : size - total, bufferSize);
+        }
+        return total;
+    }
+
+    private static long copy(ReadableByteChannel in, FileChannel out, long size, int bufferSize) throws IOException {
+        val position = out.position();
+        long total = 0L;
+        while (size < 0 || total < size) {
+            val n = out.transferFrom(in, position + total, size < 0 ? bufferSize : Math.min(bufferSize, size - total));
+            if (n <= 0) {
+                break;
+            }
+            total += n;
+        }
+        out.position(position + total);
+        return total;
+    }
+
+    /**
+     * Copies bytes between positions of two file channels by positional read and write.
+     * <p>
+     * No seeking is needed and positions of both channels are not changed, so this method
+     * can be called concurrently on shared channels.
+     *
+     * @param in         source channel
+     * @param inPos      start position in source
+     * @param out        destination channel
+     * @param outPos     start position in destination
+     * @param size       size of bytes to copy, <code>-1</code> to copy all
+     * @param bufferSize size of buffer area
+     * @return number of copied bytes
+     * @throws IOException if occur I/O error.
+     */
+    public static long copy(@NonNull FileChannel in, long inPos, @NonNull FileChannel out, long outPos, long size,
+                            int bufferSize) throws IOException {
+        Validate.require(inPos >= 0 && outPos >= 0, "position < 0");
+        Validate.require(bufferSize > 0, "bufferSize <= 0");
+        val buf = acquireDirect(bufferSize);
+        try {
+            long total = 0L;
+            while (size < 0 || total < size) {
+                buf.clear();
+                buf.limit(size < 0 ? bufferSize : (int) Math.min(bufferSize, size - total));
+                val n = in.read(buf, inPos + total);
+                if (n == EOF) {
+                    break;
+                }
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    out.write(buf, outPos + total + buf.position());
+                }
+                total += n;
+            }
+            return total;
+        } finally {
+            releaseDirect(buf);
+        }
+    }
+
+    public static long copy(BufferReading in, BufferWriting out, long size) throws IOException {
+        return copy(in, out, size, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Copies bytes from {@code BufferReading} to {@code BufferWriting} by the cheapest path.
+     * <ul>
+     * <li>channel to channel: {@code transferTo}/{@code transferFrom} if either is a file channel</li>
+     * <li>positional to positional: positional read and write without seeking</li>
+     * <li>otherwise: a direct buffer cached by current thread</li>
+     * </ul>
+     *
+     * @param in         input source
+     * @param out        destination output
+     * @param size       size of bytes to copy, <code>-1</code> to copy all
+     * @param bufferSize size of buffer area
+     * @return number of copied bytes
+     * @throws IOException if occur I/O error.
+     */
+    public static long copy(@NonNull BufferReading in, @NonNull BufferWriting out, long size, int bufferSize)
+            throws IOException {
+        Validate.require(bufferSize > 0, "bufferSize <= 0");
+        long total;
+        if (in instanceof ChannelReading && out instanceof ChannelWriting
+                && (((ChannelReading) in).channel instanceof FileChannel || ((ChannelWriting) out).channel instanceof FileChannel)) {
+            total = copy(((ChannelReading) in).channel, ((ChannelWriting) out).channel, size, bufferSize);
+        } else if (in instanceof PositionalReading && out instanceof PositionalWriting) {
+            val src = (PositionalReading) in;
+            val dst = (PositionalWriting) out;
+            total = copy(src.channel, src.position, dst.channel, dst.position, size, bufferSize);
+            src.position += total;
+            dst.position += total;
+        } else {
+            total = pump(in, out, size, bufferSize);
+        }
+        out.flush();
+        return total;
+    }
+
+    private static long pump(BufferReading in, BufferWriting out, long size, int bufferSize) throws IOException {
+        val buf = acquireDirect(bufferSize);
+        try {
+            long total = 0L;
+            while (size < 0 || total < size) {
+                buf.clear();
+                buf.limit(size < 0 ? bufferSize : (int) Math.min(bufferSize, size - total));
+                val n = in.read(buf);
+                if (n == EOF) {
+                    break;
+                }
+                buf.flip();
+                out.write(buf);
+                total += n;
+            }
+            return total;
+        } finally {
+            releaseDirect(buf);
+        }
+    }
+
+    private static ByteBuffer acquireDirect(int size) {
+        val buf = directBuffers.get();
+        if (buf != null && buf.capacity() >= size) {
+            directBuffers.set(null);
+            return buf;
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    private static void releaseDirect(ByteBuffer buf) {
+        val cached = directBuffers.get();
+        if (buf.capacity() <= MAX_CACHED_DIRECT_SIZE && (cached == null || cached.capacity() < buf.capacity())) {
+            directBuffers.set(buf);
+            buf = cached;
+        }
+        if (buf != null) {
+            MappedRandomAccessFile.unmap(buf);
+        }
+    }
+
     public static long copy(Reading input, Writing output, int size) throws IOException {
         return copy(input, output, size, DEFAULT_BUFFER_SIZE);
     }
@@ -204,21 +575,25 @@ public final class IOUtils {
      */
     public static long copy(@NonNull Reading in, @NonNull Writing out, long size, int bufferSize) throws IOException {
         Validate.require(bufferSize > 0, "bufferSize <= 0");
-        val buf = new byte[bufferSize];
-        int n;
-        long total = 0L;
-        while ((n = in.read(buf, 0, bufferSize)) != EOF) {
-            total += n;
-            if (size < 0 || total < size) {
-                out.write(buf, 0, n);
-            } else {
-                out.write(buf, 0, n - (int) (total - size));
-                total = size;
-                break;
+        val buf = bufferPool.acquireBytes(bufferSize);
+        try {
+            int n;
+            long total = 0L;
+            while ((n = in.read(buf, 0, bufferSize)) != EOF) {
+                total += n;
+                if (size < 0 || total < size) {
+                    out.write(buf, 0, n);
+                } else {
+                    out.write(buf, 0, n - (int) (total - size));
+                    total = size;
+                    break;
+                }
             }
+            out.flush();
+            return total;
+        } finally {
+            bufferPool.releaseBytes(buf);
         }
-        out.flush();
-        return total;
     }
 
     /**
@@ -233,14 +608,26 @@ public final class IOUtils {
     }
 
     /**
-     * Gets all bytes of specified input.
+     * Gets all bytes of specified input with known size.
+     *
+     * @param in   the input
+     * @param size size of remaining bytes in the input, <code>-1</code> if unknown
+     * @return the bytes
+     * @throws IOException if occur I/O error
+     */
+    public static byte[] toBytes(InputStream in, long size) throws IOException {
+        return size < 0 ? toBytes(in) : toBytes(readingFor(in), size);
+    }
+
+    /**
+     * Gets all remaining bytes of specified input.
      *
      * @param raf the input
      * @return the bytes
      * @throws IOException if occur I/O error
      */
     public static byte[] toBytes(RandomAccessFile raf) throws IOException {
-        return toBytes(readingFor(raf));
+        return toBytes(readingFor(raf), raf.length() - raf.getFilePointer());
     }
 
     /**
@@ -251,9 +638,169 @@ public final class IOUtils {
      * @throws IOException if occur I/O error
      */
     public static byte[] toBytes(Reading in) throws IOException {
-        val out = new ByteBuilder();
+        return toBytes(in, -1);
+    }
+
+    /**
+     * Gets all bytes of specified input with known size.
+     * <p>
+     * If size is known, the bytes are read directly into an array of that size. More bytes than
+     * the size are still read, a shorter input returns a trimmed array.
+     *
+     * @param in   the input
+     * @param size size of remaining bytes in the input, <code>-1</code> if unknown
+     * @return the bytes
+     * @throws IOException if occur I/O error
+     */
+    public static byte[] toBytes(@NonNull Reading in, long size) throws IOException {
+        if (size < 0 || size > MAX_ARRAY_SIZE) {
+            val out = new ByteBuilder();
+            copy(in, writingFor(out), -1, DEFAULT_BUFFER_SIZE);
+            return out.toByteArray();
+        }
+        val b = new byte[(int) size];
+        val n = readFully(in, b, 0, b.length);
+        if (n < b.length) {
+            return Arrays.copyOf(b, n);
+        }
+        val buf = new byte[1];
+        if (in.read(buf, 0, 1) == EOF) {
+            return b;
+        }
+        val out = new ByteBuilder(b.length + DEFAULT_BUFFER_SIZE);
+        out.append(b).append(buf[0]);
         copy(in, writingFor(out), -1, DEFAULT_BUFFER_SIZE);
-        return out.array();
+        return out.toByteArray();
+    }
+
+    private static int readFully(Reading in, byte[] b, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            val n = in.read(b, off + total, len - total);
+            if (n == EOF) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Reads bytes of specified region in the channel asynchronously.
+     *
+     * @param ch       the channel
+     * @param position start position in the file
+     * @param size     size of bytes to read, a shorter file returns a trimmed array
+     * @return future of the bytes
+     */
+    public static CompletableFuture<byte[]> toBytesAsync(@NonNull AsynchronousFileChannel ch, long position, long size) {
+        Validate.require(position >= 0, "position < 0");
+        Validate.require(size >= 0 && size <= MAX_ARRAY_SIZE, "size out of range: %d", size);
+        val b = new byte[(int) size];
+        return readFullyAsync(ch, ByteBuffer.wrap(b), position).thenApply(n -> n < b.length ? Arrays.copyOf(b, n) : b);
+    }
+
+    /**
+     * Copies bytes between positions of two channels asynchronously.
+     * <p>
+     * Only one read or write of each copy is in flight at a time.
+     *
+     * @param in         source channel
+     * @param inPos      start position in source
+     * @param out        destination channel
+     * @param outPos     start position in destination
+     * @param size       size of bytes to copy, <code>-1</code> to copy all
+     * @param bufferSize size of buffer area
+     * @return future of number of copied bytes
+     */
+    public static CompletableFuture<Long> copyAsync(@NonNull AsynchronousFileChannel in, long inPos,
+                                                    @NonNull AsynchronousFileChannel out, long outPos,
+                                                    long size, int bufferSize) {
+        Validate.require(inPos >= 0 && outPos >= 0, "position < 0");
+        Validate.require(bufferSize > 0, "bufferSize <= 0");
+        val future = new CompletableFuture<Long>();
+        new AsyncCopy(in, inPos, out, outPos, size, ByteBuffer.allocate(bufferSize), future).next();
+        return future;
+    }
+
+    /**
+     * Reads bytes to the buffer until it is full or end of file is reached.
+     *
+     * @return future of number of read bytes
+     */
+    static CompletableFuture<Integer> readFullyAsync(AsynchronousFileChannel ch, ByteBuffer dst, long position) {
+        val future = new CompletableFuture<Integer>();
+        if (!dst.hasRemaining()) {
+            future.complete(0);
+            return future;
+        }
+        ch.read(dst, position, 0, new CompletionHandler<Integer, Integer>() {
+            @Override
+            public void completed(Integer n, Integer total) {
+                if (n < 0 || !dst.hasRemaining()) {
+                    future.complete(n < 0 ? total : total + n);
+                } else {
+                    ch.read(dst, position + total + n, total + n, this);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Integer total) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @RequiredArgsConstructor
+    private static class AsyncCopy implements CompletionHandler<Integer, Boolean> {
+        private final AsynchronousFileChannel in;
+        private final long inPos;
+        private final AsynchronousFileChannel out;
+        private final long outPos;
+        private final long size;
+        private final ByteBuffer buf;
+        private final CompletableFuture<Long> future;
+
+        private long total; // number of written bytes
+        private long written; // written bytes of current buffer
+
+        void next() {
+            if (size >= 0 && total >= size) {
+                future.complete(total);
+                return;
+            }
+            buf.clear();
+            if (size >= 0 && size - total < buf.capacity()) {
+                buf.limit((int) (size - total));
+            }
+            in.read(buf, inPos + total, Boolean.TRUE, this);
+        }
+
+        @Override
+        public void completed(Integer n, Boolean reading) {
+            if (reading) {
+                if (n < 0) {
+                    future.complete(total);
+                    return;
+                }
+                buf.flip();
+                written = 0;
+            } else {
+                written += n;
+                if (!buf.hasRemaining()) {
+                    total += written;
+                    next();
+                    return;
+                }
+            }
+            out.write(buf, outPos + total + written, Boolean.FALSE, this);
+        }
+
+        @Override
+        public void failed(Throwable e, Boolean reading) {
+            future.completeExceptionally(e);
+        }
     }
 
     public static Reader readerFor(File file) throws IOException {
@@ -346,21 +893,25 @@ public final class IOUtils {
      */
     public static long copy(@NonNull Reader in, @NonNull Writer out, long size, int bufferSize) throws IOException {
         Validate.require(bufferSize > 0, "bufferSize <= 0");
-        val buf = new char[bufferSize];
-        int n;
-        long total = 0L;
-        while ((n = in.read(buf, 0, bufferSize)) != EOF) {
-            total += n;
-            if (size < 0 || total < size) {
-                out.write(buf, 0, n);
-            } else {
-                out.write(buf, 0, n - (int) (total - size));
-                total = size;
-                break;
+        val buf = bufferPool.acquireChars(bufferSize);
+        try {
+            int n;
+            long total = 0L;
+            while ((n = in.read(buf, 0, bufferSize)) != EOF) {
+                total += n;
+                if (size < 0 || total < size) {
+                    out.write(buf, 0, n);
+                } else {
+                    out.write(buf, 0, n - (int) (total - size));
+                    total = size;
+                    break;
+                }
             }
+            out.flush();
+            return total;
+        } finally {
+            bufferPool.releaseChars(buf);
         }
-        out.flush();
-        return total;
     }
 
     /**
@@ -531,6 +1082,22 @@ public final class IOUtils {
         }
     }
 
+    @RequiredArgsConstructor
+    private static class HeapBufferWriting implements Writing {
+        @NonNull
+        private final ByteBuffer buffer;
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            buffer.put(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+        }
+    }
+
     @RequiredArgsConstructor
     private static class RAFWriting implements Reading, Writing {
         @NonNull
@@ -552,6 +1119,140 @@ public final class IOUtils {
         }
     }
 
+    @RequiredArgsConstructor
+    private static class ChannelReading implements BufferReading {
+        @NonNull
+        private final ReadableByteChannel channel;
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            if (channel instanceof ScatteringByteChannel) {
+                return ((ScatteringByteChannel) channel).read(dsts, offset, length);
+            }
+            long total = 0L;
+            for (int i = offset, end = offset + length; i < end; ++i) {
+                val n = channel.read(dsts[i]);
+                if (n == EOF) {
+                    return total == 0 ? EOF : total;
+                }
+                total += n;
+                if (dsts[i].hasRemaining()) {
+                    break;
+                }
+            }
+            return total;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class ChannelWriting implements BufferWriting {
+        @NonNull
+        private final WritableByteChannel channel;
+
+        /**
+         * The stream wrapped by channel, for flushing.
+         */
+        private final OutputStream stream;
+
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (channel instanceof GatheringByteChannel) {
+                val gather = (GatheringByteChannel) channel;
+                for (int end = offset + length; offset < end; ) {
+                    gather.write(srcs, offset, end - offset);
+                    while (offset < end && !srcs[offset].hasRemaining()) {
+                        ++offset;
+                    }
+                }
+            } else {
+                for (int i = offset, end = offset + length; i < end; ++i) {
+                    write(srcs[i]);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (stream != null) {
+                stream.flush();
+            }
+        }
+    }
+
+    private static class PositionalReading implements BufferReading {
+        private final FileChannel channel;
+        private long position;
+
+        PositionalReading(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            val n = channel.read(dst, position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long total = 0L;
+            for (int i = offset, end = offset + length; i < end; ++i) {
+                while (dsts[i].hasRemaining()) {
+                    val n = read(dsts[i]);
+                    if (n == EOF) {
+                        return total == 0 ? EOF : total;
+                    }
+                    total += n;
+                }
+            }
+            return total;
+        }
+    }
+
+    private static class PositionalWriting implements BufferWriting {
+        private final FileChannel channel;
+        private long position;
+
+        PositionalWriting(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                position += channel.write(src, position);
+            }
+        }
+
+        @Override
+        public void write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            for (int i = offset, end = offset + length; i < end; ++i) {
+                write(srcs[i]);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+    }
+
     @RequiredArgsConstructor
     private static class FindResourcesAction implements PrivilegedAction<Iterable<URL>> {
         @NonNull
@@ -16,57 +16,338 @@
 
 package jclp.io;
 
+import jclp.Validate;
+import lombok.NonNull;
 import lombok.val;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- * Utilities for LZ77.
+ * Utility class for LZ77 compression used by PalmDoc.
+ * <p>
+ * Each token of compressed data is one of:
+ * <ul>
+ * <li>{@code 0x00} or {@code 0x09-0x7F}: the literal byte</li>
+ * <li>{@code 0x01-0x08}: the number of following literal bytes</li>
+ * <li>{@code 0x80-0xBF}: with next byte, 11 bits distance and 3 bits length (plus 3) of back-reference</li>
+ * <li>{@code 0xC0-0xFF}: a space followed by the byte XOR {@code 0x80}</li>
+ * </ul>
  */
 public final class Lz77Utils {
     private Lz77Utils() {
     }
 
-    public static ByteBuilder decompress(InputStream in) throws IOException {
-        int ch;
-        val out = new ByteBuilder();
-        byte[] buf = new byte[8];
-        while ((ch = in.read()) != -1) {
-            if (ch == 0) {
-                out.append(ch);
-            } else if (ch >= 1 && ch <= 8) {
-                out.append(buf = readBytes(in, buf, ch), 0, ch);
-            } else if (ch <= 0x7F) {
-                out.append(ch);
-            } else if (ch >= 0xC0) {
-                out.append(' ').append(ch ^ 0x80);
+    /**
+     * Max ratio of decompressed size to compressed size.
+     */
+    private static final int MAX_EXPANSION = 5;
+
+    private static final int MIN_MATCH = 3;
+
+    private static final int MAX_MATCH = 10;
+
+    private static final int MAX_DISTANCE = 2047;
+
+    private static final int WINDOW_MASK = 2047;
+
+    private static final int HASH_BITS = 12;
+
+    /**
+     * Max number of candidates visited in the hash chain for each position.
+     */
+    private static final int MAX_CHAIN = 16;
+
+    /**
+     * Gets max size of compressed data for specified length of input.
+     *
+     * @param length length of input
+     * @return the size
+     */
+    public static int maxCompressedLength(int length) {
+        return length + (length + 1) / 2;
+    }
+
+    public static byte[] compress(@NonNull byte[] data) {
+        return compress(data, 0, data.length);
+    }
+
+    /**
+     * Compresses a specified area of input byte data.
+     *
+     * @param data   the input byte data
+     * @param offset start index of compressing area
+     * @param length length of compressing area
+     * @return compressed data
+     */
+    public static byte[] compress(@NonNull byte[] data, int offset, int length) {
+        val b = new byte[maxCompressedLength(length)];
+        return Arrays.copyOf(b, compress(data, offset, length, b, 0));
+    }
+
+    /**
+     * Compresses a specified area of input data to output array.
+     * <p>
+     * Matches are found with a hash chain over 3-byte prefixes in the 2047-byte window.
+     *
+     * @param src    the input byte data
+     * @param srcOff start index of compressing area
+     * @param srcLen length of compressing area
+     * @param dst    the output array, at least {@link #maxCompressedLength(int)} bytes from dstOff
+     * @param dstOff start index of output area
+     * @return number of compressed bytes
+     */
+    public static int compress(@NonNull byte[] src, int srcOff, int srcLen, @NonNull byte[] dst, int dstOff) {
+        if (srcOff < 0 || srcLen < 0 || srcLen > src.length - srcOff || dstOff < 0 || dstOff > dst.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        Validate.require(dst.length - dstOff >= maxCompressedLength(srcLen), "dst is too small");
+        val head = new int[1 << HASH_BITS];
+        Arrays.fill(head, -1);
+        val prev = new int[WINDOW_MASK + 1];
+        val end = srcOff + srcLen;
+        int i = srcOff, o = dstOff;
+        while (i < end) {
+            int bestLen = 0, bestDist = 0;
+            if (end - i >= MIN_MATCH) {
+                val maxLen = Math.min(MAX_MATCH, end - i);
+                int p = head[hash(src, i)];
+                for (int chain = MAX_CHAIN; p >= 0 && i - p <= MAX_DISTANCE && chain-- != 0; ) {
+                    if (src[p + bestLen] == src[i + bestLen]) {
+                        int n = 0;
+                        while (n < maxLen && src[p + n] == src[i + n]) {
+                            ++n;
+                        }
+                        if (n > bestLen) {
+                            bestLen = n;
+                            bestDist = i - p;
+                            if (n == maxLen) {
+                                break;
+                            }
+                        }
+                    }
+                    val q = prev[p & WINDOW_MASK];
+                    if (q >= p) {
+                        break;
+                    }
+                    p = q;
+                }
+            }
+            if (bestLen >= MIN_MATCH) {
+                val v = 0x8000 | (bestDist << 3) | (bestLen - MIN_MATCH);
+                dst[o++] = (byte) (v >> 8);
+                dst[o++] = (byte) v;
+                for (int e = i + bestLen; i < e; ++i) {
+                    insert(src, i, end, head, prev);
+                }
+                continue;
+            }
+            val ch = src[i] & 0xFF;
+            if (ch == ' ' && i + 1 < end && (src[i + 1] & 0xFF) >= 0x40 && (src[i + 1] & 0xFF) <= 0x7F) {
+                dst[o++] = (byte) (src[i + 1] ^ 0x80);
+                insert(src, i++, end, head, prev);
+                insert(src, i++, end, head, prev);
+            } else if (!needsEscape(ch)) {
+                dst[o++] = (byte) ch;
+                insert(src, i++, end, head, prev);
             } else {
-                ch = (ch << 8) + (readByte(in) & 0xFF);
-                int di = (ch & 0x3FFF) >> 3;
-                val b = out.array();
-                for (int n = (ch & 7) + 3; n-- != 0; ) {
-                    out.append(b[out.size() - di]);
+                // a plain byte is kept in the run if another escaped byte follows it
+                int n = 1;
+                while (n < 8 && i + n < end && (needsEscape(src[i + n] & 0xFF)
+                        || (n < 7 && i + n + 1 < end && needsEscape(src[i + n + 1] & 0xFF)))) {
+                    ++n;
+                }
+                dst[o++] = (byte) n;
+                System.arraycopy(src, i, dst, o, n);
+                o += n;
+                for (int e = i + n; i < e; ++i) {
+                    insert(src, i, end, head, prev);
                 }
             }
         }
+        return o - dstOff;
+    }
+
+    private static boolean needsEscape(int ch) {
+        return (ch >= 1 && ch <= 8) || ch >= 0x80;
+    }
+
+    private static int hash(byte[] b, int i) {
+        val x = ((b[i] & 0xFF) << 16) | ((b[i + 1] & 0xFF) << 8) | (b[i + 2] & 0xFF);
+        return (x * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+
+    private static void insert(byte[] b, int i, int end, int[] head, int[] prev) {
+        if (end - i >= MIN_MATCH) {
+            val h = hash(b, i);
+            prev[i & WINDOW_MASK] = head[h];
+            head[h] = i;
+        }
+    }
+
+    public static ByteBuilder decompress(InputStream in) throws IOException {
+        val data = IOUtils.toBytes(in);
+        val buf = new byte[data.length * MAX_EXPANSION];
+        val n = decompress(data, 0, data.length, buf, 0, buf.length);
+        val out = new ByteBuilder(n);
+        out.append(buf, 0, n);
         return out;
     }
 
-    private static int readByte(InputStream in) throws IOException {
-        int b = in.read();
-        if (b == -1) {
-            throw new EOFException();
-        } else {
-            return b;
+    /**
+     * Decompresses a specified area of input data with known decompressed size.
+     *
+     * @param data   the input byte data
+     * @param offset start index of decompressing area
+     * @param length length of decompressing area
+     * @param size   size of decompressed data
+     * @return decompressed data, trimmed if shorter than size
+     * @throws IOException if the compressed data is invalid or longer than size when decompressed
+     */
+    public static byte[] decompress(@NonNull byte[] data, int offset, int length, int size) throws IOException {
+        val b = new byte[size];
+        val n = decompress(data, offset, length, b, 0, size);
+        return n == size ? b : Arrays.copyOf(b, n);
+    }
+
+    public static int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) throws IOException {
+        return decompress(src, srcOff, srcLen, dst, dstOff, dst.length - dstOff);
+    }
+
+    /**
+     * Decompresses a specified area of input data to specified area of output array.
+     * <p>
+     * Back-references that do not overlap their output are copied with {@code System.arraycopy}.
+     *
+     * @param src    the input byte data
+     * @param srcOff start index of decompressing area
+     * @param srcLen length of decompressing area
+     * @param dst    the output array
+     * @param dstOff start index of output area
+     * @param dstLen length of output area
+     * @return number of decompressed bytes
+     * @throws IOException if the compressed data is invalid or longer than output area when decompressed
+     */
+    public static int decompress(@NonNull byte[] src, int srcOff, int srcLen, @NonNull byte[] dst, int dstOff, int dstLen)
+            throws IOException {
+        if (srcOff < 0 || srcLen < 0 || srcLen > src.length - srcOff
+                || dstOff < 0 || dstLen < 0 || dstLen > dst.length - dstOff) {
+            throw new IndexOutOfBoundsException();
         }
+        int i = srcOff, o = dstOff;
+        val end = srcOff + srcLen;
+        val limit = dstOff + dstLen;
+        while (i < end) {
+            int ch = src[i++] & 0xFF;
+            if (ch == 0 || (ch >= 9 && ch <= 0x7F)) {
+                if (o == limit) {
+                    throw overflow(dstLen);
+                }
+                dst[o++] = (byte) ch;
+            } else if (ch <= 8) {
+                if (ch > end - i) {
+                    throw new EOFException();
+                } else if (ch > limit - o) {
+                    throw overflow(dstLen);
+                }
+                System.arraycopy(src, i, dst, o, ch);
+                i += ch;
+                o += ch;
+            } else if (ch >= 0xC0) {
+                if (2 > limit - o) {
+                    throw overflow(dstLen);
+                }
+                dst[o++] = ' ';
+                dst[o++] = (byte) (ch ^ 0x80);
+            } else {
+                if (i == end) {
+                    throw new EOFException();
+                }
+                ch = (ch << 8) | (src[i++] & 0xFF);
+                val di = (ch & 0x3FFF) >> 3;
+                val n = (ch & 7) + 3;
+                if (di == 0 || di > o - dstOff) {
+                    throw new IOException("invalid back-reference distance: " + di);
+                } else if (n > limit - o) {
+                    throw overflow(dstLen);
+                }
+                if (di >= n) {
+                    System.arraycopy(dst, o - di, dst, o, n);
+                    o += n;
+                } else {
+                    for (int j = o - di, e = o + n; o < e; ) {
+                        dst[o++] = dst[j++];
+                    }
+                }
+            }
+        }
+        return o - dstOff;
     }
 
-    private static byte[] readBytes(InputStream in, byte[] buf, int length) throws IOException {
-        if (in.read(buf, 0, length) != length) {
-            throw new EOFException();
+    /**
+     * Decompresses remaining bytes of source buffer into destination buffer.
+     * <p>
+     * Position of source and destination are advanced by consumed and produced bytes.
+     *
+     * @param src the input buffer
+     * @param dst the output buffer
+     * @return number of decompressed bytes
+     * @throws IOException if the compressed data is invalid or longer than remaining of output
+     */
+    public static int decompress(@NonNull ByteBuffer src, @NonNull ByteBuffer dst) throws IOException {
+        if (src.hasArray() && dst.hasArray()) {
+            val n = decompress(src.array(), src.arrayOffset() + src.position(), src.remaining(),
+                    dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            src.position(src.limit());
+            dst.position(dst.position() + n);
+            return n;
+        }
+        val start = dst.position();
+        while (src.hasRemaining()) {
+            int ch = src.get() & 0xFF;
+            if (ch == 0 || (ch >= 9 && ch <= 0x7F)) {
+                if (!dst.hasRemaining()) {
+                    throw overflow(dst.capacity());
+                }
+                dst.put((byte) ch);
+            } else if (ch <= 8) {
+                if (ch > src.remaining()) {
+                    throw new EOFException();
+                } else if (ch > dst.remaining()) {
+                    throw overflow(dst.capacity());
+                }
+                for (int k = 0; k < ch; ++k) {
+                    dst.put(src.get());
+                }
+            } else if (ch >= 0xC0) {
+                if (2 > dst.remaining()) {
+                    throw overflow(dst.capacity());
+                }
+                dst.put((byte) ' ').put((byte) (ch ^ 0x80));
+            } else {
+                if (!src.hasRemaining()) {
+                    throw new EOFException();
+                }
+                ch = (ch << 8) | (src.get() & 0xFF);
+                val di = (ch & 0x3FFF) >> 3;
+                val n = (ch & 7) + 3;
+                if (di == 0 || di > dst.position() - start) {
+                    throw new IOException("invalid back-reference distance: " + di);
+                } else if (n > dst.remaining()) {
+                    throw overflow(dst.capacity());
+                }
+                for (int k = 0; k < n; ++k) {
+                    dst.put(dst.get(dst.position() - di));
+                }
+            }
         }
-        return buf;
+        return dst.position() - start;
+    }
+
+    private static IOException overflow(int size) {
+        return new IOException("decompressed data exceeds output size: " + size);
     }
 }
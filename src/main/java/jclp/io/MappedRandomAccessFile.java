@@ -0,0 +1,344 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.io;
+
+import jclp.log.Log;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Random access file backed by memory-mapped windows.
+ * <p>
+ * The file is divided into windows of {@code 1 << winbitlen} bytes, each window is mapped
+ * on first access and kept until the file is closed, so random reads over the file cost
+ * no system call once the window is mapped.
+ * <p>
+ * Writing to the last window, which is mapped short at end of file, remaps it to full size, the file is
+ * truncated to its logical length when closed.
+ */
+public class MappedRandomAccessFile implements Closeable {
+    private static final String TAG = "MappedRAF";
+
+    private static final int DEFAULT_WINDOW_BIT_LEN = 26;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final boolean writable;
+
+    private final int winbitlen;
+    private final int winsize;
+    private final long winmask;
+    private MappedByteBuffer[] windows;
+
+    private long fileendpos;
+    private long curpos;
+    private boolean closed;
+
+    public MappedRandomAccessFile(String name) throws IOException {
+        this(name, "r", DEFAULT_WINDOW_BIT_LEN);
+    }
+
+    public MappedRandomAccessFile(File file) throws IOException {
+        this(file.getPath(), "r", DEFAULT_WINDOW_BIT_LEN);
+    }
+
+    public MappedRandomAccessFile(String name, String mode) throws IOException {
+        this(name, mode, DEFAULT_WINDOW_BIT_LEN);
+    }
+
+    public MappedRandomAccessFile(File file, String mode) throws IOException {
+        this(file.getPath(), mode, DEFAULT_WINDOW_BIT_LEN);
+    }
+
+    public MappedRandomAccessFile(File file, String mode, int winbitlen) throws IOException {
+        this(file.getPath(), mode, winbitlen);
+    }
+
+    public MappedRandomAccessFile(String name, String mode, int winbitlen) throws IOException {
+        if (winbitlen <= 0 || winbitlen > 30) {
+            throw new IllegalArgumentException("winbitlen must in range [1, 30]");
+        }
+        raf = new RandomAccessFile(name, mode);
+        channel = raf.getChannel();
+        writable = !"r".equals(mode);
+
+        this.winbitlen = winbitlen;
+        winsize = 1 << winbitlen;
+        winmask = winsize - 1L;
+
+        fileendpos = channel.size();
+        windows = new MappedByteBuffer[(int) ((fileendpos + winmask) >>> winbitlen)];
+        curpos = 0;
+    }
+
+    private MappedByteBuffer windowFor(long pos, boolean writing) throws IOException {
+        val index = (int) (pos >>> winbitlen);
+        if (index >= windows.length) {
+            windows = Arrays.copyOf(windows, index + 1);
+        }
+        val offset = (int) (pos & winmask);
+        MappedByteBuffer window = windows[index];
+        if (window == null || offset >= window.capacity() || writing && window.capacity() < winsize) {
+            if (window != null) {
+                unmap(window);
+            }
+            val start = (long) index << winbitlen;
+            val size = writing ? winsize : Math.min(winsize, fileendpos - start);
+            window = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, start, size);
+            windows[index] = window;
+        }
+        return window;
+    }
+
+    private void releaseWindows() {
+        for (int i = 0; i < windows.length; ++i) {
+            if (windows[i] != null) {
+                unmap(windows[i]);
+                windows[i] = null;
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("file is closed");
+        }
+    }
+
+    private void ensureWritable() throws IOException {
+        ensureOpen();
+        if (!writable) {
+            throw new IOException("file is opened for reading only");
+        }
+    }
+
+    public int read(long pos) throws IOException {
+        ensureOpen();
+        if (pos < 0 || pos >= fileendpos) {
+            return -1;
+        }
+        curpos = pos;
+        return windowFor(pos, false).get((int) (pos & winmask)) & 0xFF;
+    }
+
+    public void append(byte bw) throws IOException {
+        write(bw, fileendpos);
+    }
+
+    public void write(byte bw, long pos) throws IOException {
+        ensureWritable();
+        if (pos < 0 || pos > fileendpos) {
+            throw new IndexOutOfBoundsException();
+        }
+        windowFor(pos, true).put((int) (pos & winmask), bw);
+        if (pos == fileendpos) {
+            ++fileendpos;
+        }
+        curpos = pos;
+    }
+
+    public int read() throws IOException {
+        val n = read(curpos);
+        if (n != -1) {
+            ++curpos;
+        }
+        return n;
+    }
+
+    public void write(int n) throws IOException {
+        val pos = curpos;
+        write((byte) n, pos);
+        curpos = pos + 1;
+    }
+
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        } else if (curpos >= fileendpos) {
+            return -1;
+        }
+        val total = (int) Math.min(len, fileendpos - curpos);
+        int remaining = total;
+        while (remaining > 0) {
+            val window = windowFor(curpos, false);
+            val offset = (int) (curpos & winmask);
+            val n = Math.min(remaining, window.capacity() - offset);
+            window.position(offset);
+            window.get(b, off, n);
+            off += n;
+            curpos += n;
+            remaining -= n;
+        }
+        return total;
+    }
+
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureWritable();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (curpos > fileendpos) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            val window = windowFor(curpos, true);
+            val offset = (int) (curpos & winmask);
+            val n = Math.min(len, window.capacity() - offset);
+            window.position(offset);
+            window.put(b, off, n);
+            off += n;
+            curpos += n;
+            len -= n;
+        }
+        if (curpos > fileendpos) {
+            fileendpos = curpos;
+        }
+    }
+
+    public void seek(long pos) throws IOException {
+        ensureOpen();
+        if (pos < 0) {
+            throw new IOException("Negative seek offset");
+        }
+        curpos = pos;
+    }
+
+    public long getFilePointer() {
+        return curpos;
+    }
+
+    public long length() {
+        return fileendpos;
+    }
+
+    public void setLength(long newLength) throws IOException {
+        ensureWritable();
+        releaseWindows();
+        raf.setLength(newLength);
+        fileendpos = newLength;
+        if (curpos > newLength) {
+            curpos = newLength;
+        }
+    }
+
+    /**
+     * Writes all modified content of mapped windows to the storage device.
+     *
+     * @throws IOException if occur I/O errors
+     */
+    public void flush() throws IOException {
+        ensureOpen();
+        if (writable) {
+            for (val window : windows) {
+                if (window != null) {
+                    window.force();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            releaseWindows();
+            try {
+                if (writable && channel.size() != fileendpos) {
+                    raf.setLength(fileendpos);
+                }
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private static final Method invokeCleaner;
+    private static final Object theUnsafe;
+    private static final Method cleanerMethod;
+    private static final Method cleanMethod;
+
+    static {
+        Method invoker = null, cleaner = null, clean = null;
+        Object unsafe = null;
+        try {
+            val unsafeClass = Class.forName("sun.misc.Unsafe");
+            invoker = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (Exception e) {
+            invoker = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (Exception ex) {
+                Log.d(TAG, "cannot unmap buffers on this platform", ex);
+            }
+        }
+        invokeCleaner = invoker;
+        theUnsafe = unsafe;
+        cleanerMethod = cleaner;
+        cleanMethod = clean;
+    }
+
+    /**
+     * Releases the native mapping or memory of specified direct buffer without waiting for GC.
+     * <p>
+     * The buffer must not be accessed after calling this method.
+     *
+     * @param buffer the mapped or direct buffer, not a slice or duplicate
+     */
+    static void unmap(ByteBuffer buffer) {
+        try {
+            if (invokeCleaner != null) {
+                invokeCleaner.invoke(theUnsafe, buffer);
+            } else if (cleanerMethod != null) {
+                val cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleanMethod.invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            Log.d(TAG, "cannot unmap buffer", e);
+        }
+    }
+}
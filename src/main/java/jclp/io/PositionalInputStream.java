@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.io;
+
+import jclp.Validate;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Wrapper for block of {@code FileChannel} as {@code InputStream} using positional read.
+ * <p>
+ * Unlike {@link RAFInputStream}, the position of the file is never used or changed, each stream
+ * keeps its own position and buffer. So many streams over one open file can be read by
+ * different threads without locking, while one stream should be used by one thread.
+ * <p>
+ * Closing the stream does not close the channel.
+ */
+public class PositionalInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long endpos; // value: offset + size
+    private long curpos;
+    private long markpos;
+
+    private byte[] buf;
+    private ByteBuffer bb;
+    private long bufstartpos; // file position of buf[0]
+    private int bufusedsize;
+
+    public PositionalInputStream(@NonNull RandomAccessFile source, long offset, long size) throws IOException {
+        this(source.getChannel(), offset, size, IOUtils.DEFAULT_BUFFER_SIZE);
+    }
+
+    public PositionalInputStream(@NonNull FileChannel channel, long offset, long size) throws IOException {
+        this(channel, offset, size, IOUtils.DEFAULT_BUFFER_SIZE);
+    }
+
+    // size < 0 to use all content after offset
+    public PositionalInputStream(@NonNull FileChannel channel, long offset, long size, int bufferSize) throws IOException {
+        Validate.require(bufferSize > 0, "bufferSize <= 0");
+        this.channel = channel;
+        long length = channel.size();
+
+        curpos = (offset < 0) ? 0 : offset;
+        endpos = (size < 0) ? length : curpos + size;
+        markpos = curpos;
+
+        Validate.require(curpos <= length, "offset > length of source");
+        Validate.require(endpos <= length, "offset + size > length of source");
+
+        buf = IOUtils.getBufferPool().acquireBytes(bufferSize);
+        bb = ByteBuffer.wrap(buf);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buf == null) {
+            throw new IOException("stream is closed");
+        }
+    }
+
+    /**
+     * Reads bytes from file position to the buffer.
+     *
+     * @return {@literal false} if the end is reached
+     */
+    private boolean fillbuf() throws IOException {
+        val len = (int) Math.min(buf.length, endpos - curpos);
+        if (len <= 0) {
+            return false;
+        }
+        bb.clear().limit(len);
+        val n = readFully(bb, curpos);
+        bufstartpos = curpos;
+        bufusedsize = n;
+        return n > 0;
+    }
+
+    private int readFully(ByteBuffer dst, long pos) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            val n = channel.read(dst, pos + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private boolean inbuf(long pos) {
+        return pos >= bufstartpos && pos < bufstartpos + bufusedsize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (curpos >= endpos || (!inbuf(curpos) && !fillbuf())) {
+            return -1;
+        }
+        return buf[(int) (curpos++ - bufstartpos)] & 0xFF;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+        long count = endpos - curpos;
+        if (count <= 0) {
+            return -1;
+        }
+        len = (int) Math.min(count, len);
+        if (inbuf(curpos)) {
+            val n = Math.min(len, (int) (bufstartpos + bufusedsize - curpos));
+            System.arraycopy(buf, (int) (curpos - bufstartpos), b, off, n);
+            curpos += n;
+            return n;
+        }
+        if (len >= buf.length) {
+            // large read bypasses the buffer
+            val n = readFully(ByteBuffer.wrap(b, off, len), curpos);
+            curpos += n;
+            return n > 0 ? n : -1;
+        }
+        if (!fillbuf()) {
+            return -1;
+        }
+        val n = Math.min(len, bufusedsize);
+        System.arraycopy(buf, 0, b, off, n);
+        curpos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        if (n <= 0) {
+            return 0;
+        }
+        n = Math.min(n, endpos - curpos);
+        curpos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return (int) Math.min(Integer.MAX_VALUE, endpos - curpos);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        markpos = curpos;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        ensureOpen();
+        curpos = markpos;
+    }
+
+    /**
+     * Returns current position in the file.
+     */
+    public long getPosition() {
+        return curpos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buf != null) {
+            IOUtils.getBufferPool().releaseBytes(buf);
+            buf = null;
+            bb = null;
+        }
+    }
+}
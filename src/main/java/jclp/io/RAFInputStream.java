@@ -25,6 +25,9 @@ import java.io.RandomAccessFile;
 
 /**
  * Wrapper for block of {@code RandomAccessFile} as {@code InputStream}.
+ * <p>
+ * The stream reads through the file pointer of the source, use {@link PositionalInputStream}
+ * to read blocks of one file concurrently.
  */
 public class RAFInputStream extends InputStream {
     private final RandomAccessFile source;
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.io;
+
+import jclp.Validate;
+import lombok.Getter;
+import lombok.val;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free buffer pool with slots striped by thread id.
+ * <p>
+ * Each thread probes a few slots near its own stripe, so threads rarely contend for
+ * the same slot. Total size of pooled arrays never exceeds the capacity, char arrays
+ * are counted as two bytes per element.
+ */
+public class StripedBufferPool implements BufferPool {
+    private static final int PROBES = 2;
+
+    private final AtomicReferenceArray<byte[]> bytes;
+    private final AtomicReferenceArray<char[]> chars;
+    private final int mask;
+
+    /**
+     * Max size in bytes of all pooled arrays.
+     */
+    @Getter
+    private final long capacity;
+
+    /**
+     * Max size in bytes of one pooled array, larger arrays are dropped when released.
+     */
+    @Getter
+    private final int maxBufferSize;
+
+    private final AtomicLong pooledSize = new AtomicLong();
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong releaseCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public StripedBufferPool() {
+        this(Runtime.getRuntime().availableProcessors() * 2, 8 << 20, 1 << 20);
+    }
+
+    /**
+     * Constructs a pool with specified limits.
+     *
+     * @param stripes       number of slots, rounded up to power of two
+     * @param capacity      max size in bytes of all pooled arrays
+     * @param maxBufferSize max size in bytes of one pooled array
+     */
+    public StripedBufferPool(int stripes, long capacity, int maxBufferSize) {
+        Validate.require(stripes > 0, "stripes <= 0");
+        Validate.require(capacity >= 0, "capacity < 0");
+        Validate.require(maxBufferSize >= 0, "maxBufferSize < 0");
+        val size = Integer.highestOneBit(stripes - 1) << 1;
+        bytes = new AtomicReferenceArray<>(Math.max(size, 1));
+        chars = new AtomicReferenceArray<>(Math.max(size, 1));
+        mask = bytes.length() - 1;
+        this.capacity = capacity;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().getId() & mask;
+    }
+
+    private boolean reserve(long size) {
+        if (size > maxBufferSize) {
+            return false;
+        }
+        if (pooledSize.addAndGet(size) > capacity) {
+            pooledSize.addAndGet(-size);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] acquireBytes(int size) {
+        acquireCount.incrementAndGet();
+        val index = stripe();
+        for (int i = 0; i < PROBES; ++i) {
+            val slot = (index + i) & mask;
+            val b = bytes.get(slot);
+            if (b != null && b.length >= size && bytes.compareAndSet(slot, b, null)) {
+                pooledSize.addAndGet(-b.length);
+                return b;
+            }
+        }
+        missCount.incrementAndGet();
+        return new byte[size];
+    }
+
+    @Override
+    public void releaseBytes(byte[] b) {
+        if (b == null) {
+            return;
+        }
+        releaseCount.incrementAndGet();
+        if (!reserve(b.length)) {
+            return;
+        }
+        val index = stripe();
+        for (int i = 0; i < PROBES; ++i) {
+            if (bytes.compareAndSet((index + i) & mask, null, b)) {
+                return;
+            }
+        }
+        pooledSize.addAndGet(-b.length);
+    }
+
+    @Override
+    public char[] acquireChars(int size) {
+        acquireCount.incrementAndGet();
+        val index = stripe();
+        for (int i = 0; i < PROBES; ++i) {
+            val slot = (index + i) & mask;
+            val b = chars.get(slot);
+            if (b != null && b.length >= size && chars.compareAndSet(slot, b, null)) {
+                pooledSize.addAndGet(-2L * b.length);
+                return b;
+            }
+        }
+        missCount.incrementAndGet();
+        return new char[size];
+    }
+
+    @Override
+    public void releaseChars(char[] b) {
+        if (b == null) {
+            return;
+        }
+        releaseCount.incrementAndGet();
+        if (!reserve(2L * b.length)) {
+            return;
+        }
+        val index = stripe();
+        for (int i = 0; i < PROBES; ++i) {
+            if (chars.compareAndSet((index + i) & mask, null, b)) {
+                return;
+            }
+        }
+        pooledSize.addAndGet(-2L * b.length);
+    }
+
+    @Override
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    @Override
+    public long getReleaseCount() {
+        return releaseCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Gets size in bytes of arrays currently held by the pool.
+     *
+     * @return the size
+     */
+    public long getPooledSize() {
+        return pooledSize.get();
+    }
+
+    @Override
+    public String toString() {
+        return "StripedBufferPool{acquire=" + acquireCount + ", release=" + releaseCount
+                + ", miss=" + missCount + ", pooled=" + pooledSize + "/" + capacity + "}";
+    }
+}
@@ -16,16 +16,30 @@
 
 package jclp.io;
 
+import jclp.Validate;
+import lombok.NonNull;
 import lombok.val;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.zip.*;
 
 /**
  * Utility class for ZLib operations.
+ * <p>
+ * {@code Deflater} and {@code Inflater} instances are pooled (per compression level for deflaters)
+ * and reused across calls, so their native memory is not allocated for every operation.
  */
 public final class ZLibUtils {
     private ZLibUtils() {
@@ -36,10 +50,130 @@ public final class ZLibUtils {
      */
     public static final int BUFFER_SIZE = 2048;
 
+    /**
+     * Default size of blocks for parallel compression.
+     */
+    public static final int PARALLEL_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * Size of preset dictionary for parallel compression, the max window size of deflate.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * Max number of pooled instances per compression level.
+     */
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Pools of deflaters, the first half is for ZLIB format and the second half is for raw deflate.
+     */
+    private static final List<BlockingQueue<Deflater>> deflaters = new ArrayList<>(22);
+
+    private static final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * Input set to pooled instances so they don't keep the last input array.
+     */
+    private static final byte[] EMPTY = new byte[0];
+
+    static {
+        for (int i = 0; i < 22; ++i) {
+            deflaters.add(new ArrayBlockingQueue<Deflater>(POOL_SIZE));
+        }
+    }
+
     private static boolean isEmpty(byte[] b) {
         return b == null || b.length == 0;
     }
 
+    /**
+     * Gets a {@code Deflater} with specified level from the pool.
+     * <p>
+     * The deflater must be returned by {@link #releaseDeflater(Deflater, int)} and
+     * not be ended by caller.
+     *
+     * @param level ZLIB compression level
+     * @return the deflater
+     */
+    public static Deflater acquireDeflater(int level) {
+        return acquireDeflater(level, false);
+    }
+
+    /**
+     * Gets a {@code Deflater} with specified level and format from the pool.
+     *
+     * @param level  ZLIB compression level
+     * @param nowrap {@literal true} to produce raw deflate data without ZLIB header and checksum
+     * @return the deflater
+     */
+    public static Deflater acquireDeflater(int level, boolean nowrap) {
+        Validate.require(level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+                "invalid compression level: %d", level);
+        val deflater = deflaters.get(poolIndex(level, nowrap)).poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    /**
+     * Returns specified {@code Deflater} to the pool.
+     *
+     * @param deflater the deflater
+     * @param level    the compression level used to acquire the deflater
+     */
+    public static void releaseDeflater(Deflater deflater, int level) {
+        releaseDeflater(deflater, level, false);
+    }
+
+    /**
+     * Returns specified {@code Deflater} to the pool.
+     *
+     * @param deflater the deflater
+     * @param level    the compression level used to acquire the deflater
+     * @param nowrap   the format used to acquire the deflater
+     */
+    public static void releaseDeflater(Deflater deflater, int level, boolean nowrap) {
+        if (deflater == null) {
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(EMPTY);
+        if (!deflaters.get(poolIndex(level, nowrap)).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static int poolIndex(int level, boolean nowrap) {
+        return (nowrap ? 11 : 0) + level + 1;
+    }
+
+    /**
+     * Gets a {@code Inflater} from the pool.
+     * <p>
+     * The inflater must be returned by {@link #releaseInflater(Inflater)} and not be ended by caller.
+     *
+     * @return the inflater
+     */
+    public static Inflater acquireInflater() {
+        val inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    /**
+     * Returns specified {@code Inflater} to the pool.
+     *
+     * @param inflater the inflater
+     */
+    public static void releaseInflater(Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+        inflater.reset();
+        inflater.setInput(EMPTY);
+        if (!inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
     /**
      * Compresses specified byte data with default compression level.
      *
@@ -86,16 +220,20 @@ public final class ZLibUtils {
         if (isEmpty(data)) {
             return data;
         }
-        val compresser = new Deflater(level);
-        compresser.reset();
+        val compresser = acquireDeflater(level);
         compresser.setInput(data, offset, length);
         compresser.finish();
         val baos = new ByteArrayOutputStream(length);
-        val buf = new byte[BUFFER_SIZE];
-        while (!compresser.finished()) {
-            baos.write(buf, 0, compresser.deflate(buf));
+        val pool = IOUtils.getBufferPool();
+        val buf = pool.acquireBytes(BUFFER_SIZE);
+        try {
+            while (!compresser.finished()) {
+                baos.write(buf, 0, compresser.deflate(buf));
+            }
+        } finally {
+            releaseDeflater(compresser, level);
+            pool.releaseBytes(buf);
         }
-        compresser.end();
         return baos.toByteArray();
     }
 
@@ -122,10 +260,143 @@ public final class ZLibUtils {
      * @throws IOException if occur IO errors
      */
     public static void compress(byte[] data, int offset, int length, OutputStream output) throws IOException {
-        val dos = new DeflaterOutputStream(output);
-        dos.write(data, offset, length);
-        dos.finish();
-        dos.flush();
+        try (val compressor = compressor(IOUtils.writingFor(output), Deflater.DEFAULT_COMPRESSION)) {
+            compressor.write(data, offset, length);
+        }
+    }
+
+    /**
+     * Compresses remaining bytes of specified buffer with specified compression level.
+     *
+     * @param src   the input buffer, heap or direct
+     * @param level ZLIB compression level
+     * @return compressed data
+     * @throws IOException if occur IO errors
+     */
+    public static byte[] compress(ByteBuffer src, int level) throws IOException {
+        val out = new ByteBuilder(src.remaining());
+        try (val compressor = compressor(IOUtils.writingFor(out), level)) {
+            compressor.write(src);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses remaining bytes of source buffer into destination buffer.
+     *
+     * @param src   the input buffer, heap or direct
+     * @param dst   the output buffer, heap or direct
+     * @param level ZLIB compression level
+     * @return number of bytes written to destination
+     * @throws IOException                      if occur IO errors
+     * @throws java.nio.BufferOverflowException if destination has not enough space
+     */
+    public static int compress(ByteBuffer src, @NonNull ByteBuffer dst, int level) throws IOException {
+        val position = dst.position();
+        try (val compressor = compressor(IOUtils.writingFor(dst), level)) {
+            compressor.write(src);
+        }
+        return dst.position() - position;
+    }
+
+    /**
+     * Compresses specified input data on the common {@code ForkJoinPool}.
+     *
+     * @param data  the input byte data to be compressed
+     * @param level ZLIB compression level
+     * @return compressed data
+     * @see #compressParallel(byte[], int, int, int, int, ForkJoinPool)
+     */
+    public static byte[] compressParallel(byte[] data, int level) {
+        return compressParallel(data, 0, data.length, level, PARALLEL_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compresses a specified area of input data by blocks in parallel.
+     * <p>
+     * The input is split into blocks of fixed size, each block is deflated independently with
+     * the last 32 KiB of previous block as preset dictionary, and the blocks are stitched into
+     * one ZLIB stream with a combined Adler-32 checksum, which can be read by {@link #decompress(byte[])}.
+     *
+     * @param data      the input byte data
+     * @param offset    start index of compressing area
+     * @param length    length of compressing area
+     * @param level     ZLIB compression level
+     * @param blockSize size of each block
+     * @param pool      the pool to run compression tasks
+     * @return compressed data
+     */
+    public static byte[] compressParallel(byte[] data, int offset, int length, int level, int blockSize,
+                                          @NonNull ForkJoinPool pool) {
+        Validate.require(blockSize > 0, "blockSize <= 0");
+        if (isEmpty(data) || length <= blockSize) {
+            return compress(data, offset, length, level);
+        }
+        val end = offset + length;
+        val tasks = new ArrayList<DeflateBlock>((length + blockSize - 1) / blockSize);
+        for (int start = offset; start < end; start += blockSize) {
+            val dict = Math.max(offset, start - DICTIONARY_SIZE);
+            tasks.add(new DeflateBlock(data, start, Math.min(start + blockSize, end), dict, level, start + blockSize >= end));
+        }
+        for (val task : tasks) {
+            pool.execute(task);
+        }
+        val out = new ByteBuilder(length / 2 + 64);
+        out.append(0x78).append(headerFlags(level));
+        long adler = 1L;
+        for (val task : tasks) {
+            out.append(task.join());
+            adler = combineAdler32(adler, task.adler, task.end - task.start);
+        }
+        out.append((int) (adler >>> 24)).append((int) (adler >>> 16)).append((int) (adler >>> 8)).append((int) adler);
+        return out.toByteArray();
+    }
+
+    // FLG byte of ZLIB header for deflate with 32K window
+    private static int headerFlags(int level) {
+        int flags;
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+            flags = 2;
+        } else if (level < 2) {
+            flags = 0;
+        } else if (level < 6) {
+            flags = 1;
+        } else {
+            flags = 3;
+        }
+        flags <<= 6;
+        return flags + 31 - ((0x78 << 8) + flags) % 31;
+    }
+
+    private static final int ADLER_BASE = 65521;
+
+    /**
+     * Combines two Adler-32 checksums into the checksum of the concatenated data.
+     *
+     * @param adler1 checksum of the first part
+     * @param adler2 checksum of the second part
+     * @param len2   length of the second part
+     * @return the combined checksum
+     */
+    public static long combineAdler32(long adler1, long adler2, long len2) {
+        val rem = len2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= (ADLER_BASE << 1)) {
+            sum2 -= (ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
     }
 
     /**
@@ -152,15 +423,23 @@ public final class ZLibUtils {
         if (isEmpty(data)) {
             return data;
         }
-        val decompresser = new Inflater();
-        decompresser.reset();
+        val decompresser = acquireInflater();
         decompresser.setInput(data, offset, length);
         val baos = new ByteArrayOutputStream(length);
-        byte[] buf = new byte[BUFFER_SIZE];
-        while (!decompresser.finished()) {
-            baos.write(buf, 0, decompresser.inflate(buf));
+        val pool = IOUtils.getBufferPool();
+        val buf = pool.acquireBytes(BUFFER_SIZE);
+        try {
+            while (!decompresser.finished()) {
+                val n = decompresser.inflate(buf);
+                if (n == 0 && (decompresser.needsInput() || decompresser.needsDictionary())) {
+                    throw new DataFormatException("incomplete compressed data");
+                }
+                baos.write(buf, 0, n);
+            }
+        } finally {
+            releaseInflater(decompresser);
+            pool.releaseBytes(buf);
         }
-        decompresser.end();
         return baos.toByteArray();
     }
 
@@ -172,13 +451,336 @@ public final class ZLibUtils {
      * @throws IOException if an I/O error occurs
      */
     public static byte[] decompress(InputStream input) throws IOException {
-        val iis = new InflaterInputStream(input);
+        val inflater = acquireInflater();
+        val iis = new InflaterInputStream(input, inflater);
         val baos = new ByteArrayOutputStream(BUFFER_SIZE);
-        val buf = new byte[BUFFER_SIZE];
-        int n;
-        while ((n = iis.read(buf)) > 0) {
-            baos.write(buf, 0, n);
+        val pool = IOUtils.getBufferPool();
+        val buf = pool.acquireBytes(BUFFER_SIZE);
+        try {
+            int n;
+            while ((n = iis.read(buf)) > 0) {
+                baos.write(buf, 0, n);
+            }
+        } finally {
+            releaseInflater(inflater);
+            pool.releaseBytes(buf);
         }
         return baos.toByteArray();
     }
+
+    /**
+     * Decompresses remaining bytes of source buffer into destination buffer.
+     *
+     * @param src the input buffer, heap or direct
+     * @param dst the output buffer, heap or direct
+     * @return number of bytes written to destination
+     * @throws IOException                      if occur IO errors or the compressed data format is invalid
+     * @throws java.nio.BufferOverflowException if destination has not enough space
+     */
+    public static int decompress(ByteBuffer src, @NonNull ByteBuffer dst) throws IOException {
+        val position = dst.position();
+        try (val decompressor = decompressor(IOUtils.writingFor(dst))) {
+            decompressor.write(src);
+        }
+        return dst.position() - position;
+    }
+
+    private static final class DeflateBlock extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] data;
+        private final int start;
+        private final int end;
+        private final int dict;
+        private final int level;
+        private final boolean last;
+        private long adler;
+
+        private DeflateBlock(byte[] data, int start, int end, int dict, int level, boolean last) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+            this.dict = dict;
+            this.level = level;
+            this.last = last;
+        }
+
+        @Override
+        protected byte[] compute() {
+            val checksum = new Adler32();
+            checksum.update(data, start, end - start);
+            adler = checksum.getValue();
+            val deflater = acquireDeflater(level, true);
+            val pool = IOUtils.getBufferPool();
+            val buf = pool.acquireBytes(BUFFER_SIZE);
+            try {
+                if (dict < start) {
+                    deflater.setDictionary(data, dict, start - dict);
+                }
+                deflater.setInput(data, start, end - start);
+                val out = new ByteBuilder((end - start) / 2 + 64);
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        out.append(buf, 0, deflater.deflate(buf, 0, buf.length));
+                    }
+                } else {
+                    // sync flush ends the block at byte boundary so blocks can be concatenated
+                    int n;
+                    do {
+                        n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                        out.append(buf, 0, n);
+                    } while (n == buf.length || !deflater.needsInput());
+                }
+                return out.toByteArray();
+            } finally {
+                releaseDeflater(deflater, level, true);
+                pool.releaseBytes(buf);
+            }
+        }
+    }
+
+    /**
+     * Creates a compressor that writes compressed data to specified sink chunk by chunk.
+     *
+     * @param sink  the output
+     * @param level ZLIB compression level
+     * @return the compressor, must be closed to finish the data
+     */
+    public static Compressor compressor(@NonNull IOUtils.Writing sink, int level) {
+        return new Compressor(sink, level);
+    }
+
+    /**
+     * Creates a decompressor that writes decompressed data to specified sink chunk by chunk.
+     *
+     * @param sink the output
+     * @return the decompressor, must be closed to release resources
+     */
+    public static Decompressor decompressor(@NonNull IOUtils.Writing sink) {
+        return new Decompressor(sink);
+    }
+
+    /**
+     * Streaming compressor backed by a pooled {@code Deflater}.
+     */
+    public static final class Compressor implements Closeable {
+        private final IOUtils.Writing sink;
+        private final int level;
+        private Deflater deflater;
+        private byte[] buf;
+
+        private Compressor(IOUtils.Writing sink, int level) {
+            this.sink = sink;
+            this.level = level;
+            deflater = acquireDeflater(level);
+            buf = IOUtils.getBufferPool().acquireBytes(BUFFER_SIZE);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (deflater == null) {
+                throw new IOException("compressor is closed");
+            }
+        }
+
+        public void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            if (len == 0) {
+                return;
+            }
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                val n = deflater.deflate(buf, 0, buf.length);
+                if (n > 0) {
+                    sink.write(buf, 0, n);
+                }
+            }
+        }
+
+        /**
+         * Compresses remaining bytes of specified buffer.
+         * <p>
+         * Direct buffers are copied through a pooled array.
+         *
+         * @param src the input buffer
+         * @throws IOException if occur IO errors
+         */
+        public void write(@NonNull ByteBuffer src) throws IOException {
+            if (src.hasArray()) {
+                write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+                src.position(src.limit());
+                return;
+            }
+            val pool = IOUtils.getBufferPool();
+            val chunk = pool.acquireBytes(BUFFER_SIZE);
+            try {
+                while (src.hasRemaining()) {
+                    val n = Math.min(src.remaining(), chunk.length);
+                    src.get(chunk, 0, n);
+                    write(chunk, 0, n);
+                }
+            } finally {
+                pool.releaseBytes(chunk);
+            }
+        }
+
+        /**
+         * Flushes all pending compressed data to the sink.
+         *
+         * @throws IOException if occur IO errors
+         */
+        public void flush() throws IOException {
+            ensureOpen();
+            int n;
+            while ((n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH)) > 0) {
+                sink.write(buf, 0, n);
+                if (n < buf.length) {
+                    break;
+                }
+            }
+            sink.flush();
+        }
+
+        /**
+         * Finishes the compressed data and returns the resources to pools.
+         *
+         * @throws IOException if occur IO errors
+         */
+        @Override
+        public void close() throws IOException {
+            if (deflater == null) {
+                return;
+            }
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    val n = deflater.deflate(buf, 0, buf.length);
+                    if (n > 0) {
+                        sink.write(buf, 0, n);
+                    }
+                }
+                sink.flush();
+            } finally {
+                releaseDeflater(deflater, level);
+                IOUtils.getBufferPool().releaseBytes(buf);
+                deflater = null;
+                buf = null;
+            }
+        }
+    }
+
+    /**
+     * Streaming decompressor backed by a pooled {@code Inflater}.
+     */
+    public static final class Decompressor implements Closeable {
+        private final IOUtils.Writing sink;
+        private Inflater inflater;
+        private byte[] buf;
+
+        private Decompressor(IOUtils.Writing sink) {
+            this.sink = sink;
+            inflater = acquireInflater();
+            buf = IOUtils.getBufferPool().acquireBytes(BUFFER_SIZE);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (inflater == null) {
+                throw new IOException("decompressor is closed");
+            }
+        }
+
+        /**
+         * Tests whether the end of compressed data has been reached.
+         *
+         * @return {@literal true} if all data is decompressed
+         */
+        public boolean isFinished() {
+            return inflater == null || inflater.finished();
+        }
+
+        public void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            if (len == 0 || inflater.finished()) {
+                return;
+            }
+            inflater.setInput(b, off, len);
+            try {
+                while (!inflater.finished()) {
+                    val n = inflater.inflate(buf, 0, buf.length);
+                    if (n > 0) {
+                        sink.write(buf, 0, n);
+                    } else if (inflater.needsDictionary()) {
+                        throw new ZipException("preset dictionary is required");
+                    } else if (inflater.needsInput()) {
+                        break;
+                    }
+                }
+            } catch (DataFormatException e) {
+                val msg = e.getMessage();
+                throw new ZipException(msg != null ? msg : "Invalid ZLIB data format");
+            }
+        }
+
+        /**
+         * Decompresses remaining bytes of specified buffer.
+         * <p>
+         * Direct buffers are copied through a pooled array.
+         *
+         * @param src the input buffer
+         * @throws IOException if occur IO errors or the compressed data format is invalid
+         */
+        public void write(@NonNull ByteBuffer src) throws IOException {
+            if (src.hasArray()) {
+                write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+                src.position(src.limit() - (inflater != null ? inflater.getRemaining() : 0));
+                return;
+            }
+            val pool = IOUtils.getBufferPool();
+            val chunk = pool.acquireBytes(BUFFER_SIZE);
+            try {
+                while (src.hasRemaining() && !isFinished()) {
+                    val n = Math.min(src.remaining(), chunk.length);
+                    src.get(chunk, 0, n);
+                    write(chunk, 0, n);
+                }
+                if (inflater != null) {
+                    src.position(src.position() - inflater.getRemaining());
+                }
+            } finally {
+                pool.releaseBytes(chunk);
+            }
+        }
+
+        /**
+         * Returns the resources to pools.
+         *
+         * @throws EOFException if the compressed data is incomplete
+         */
+        @Override
+        public void close() throws IOException {
+            if (inflater == null) {
+                return;
+            }
+            val finished = inflater.finished();
+            try {
+                sink.flush();
+            } finally {
+                releaseInflater(inflater);
+                IOUtils.getBufferPool().releaseBytes(buf);
+                inflater = null;
+                buf = null;
+            }
+            if (!finished) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+        }
+    }
 }
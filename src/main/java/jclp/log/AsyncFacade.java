@@ -0,0 +1,388 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.log;
+
+import jclp.Validate;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Facade putting log events to a bounded lock-free ring buffer, a single consumer thread
+ * passes them to the delegate facade in batches.
+ * <p>
+ * Arguments are stored as they are and formatted by the delegate in the consumer thread, so
+ * mutable arguments should not be changed after logging. Name of the logging thread is passed
+ * to the delegate by {@link Log#getThreadName()}.
+ * <p>
+ * When the buffer is full, the {@link OverflowPolicy} decides whether to block or lose events,
+ * {@code WARN} and more severe events always block instead of being lost.
+ * <p>
+ * Pending events are written when closing and on JVM shutdown.
+ */
+public class AsyncFacade implements Facade, Flushable, Closeable {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Behavior when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits until free space is available.
+         */
+        BLOCK,
+        /**
+         * Drops the event.
+         */
+        DROP,
+        /**
+         * Keeps one in every {@code sampleRate} events once the buffer is three quarters full,
+         * drops the event if the buffer is full.
+         */
+        SAMPLE
+    }
+
+    @Getter
+    private final Facade delegate;
+
+    @Getter
+    private final OverflowPolicy policy;
+
+    @Getter
+    private final int sampleRate;
+
+    private final Event[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong enqueuePos = new AtomicLong();
+    private long dequeuePos; // accessed by consumer only
+    private volatile long consumedPos;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final Thread consumer;
+    private final Thread shutdownHook;
+    private volatile boolean running = true;
+    private volatile boolean sleeping;
+
+    public AsyncFacade(Facade delegate) {
+        this(delegate, DEFAULT_CAPACITY, OverflowPolicy.BLOCK, 1);
+    }
+
+    /**
+     * Constructs async facade and starts the consumer thread.
+     *
+     * @param delegate   the facade writing events
+     * @param capacity   capacity of ring buffer, rounded up to power of 2
+     * @param policy     behavior when the buffer is full
+     * @param sampleRate rate of kept events for {@link OverflowPolicy#SAMPLE}
+     */
+    public AsyncFacade(@NonNull Facade delegate, int capacity, @NonNull OverflowPolicy policy, int sampleRate) {
+        Validate.require(capacity > 1 && capacity <= 1 << 30, "capacity must in range [2, 2^30]");
+        Validate.require(sampleRate > 0, "sampleRate must > 0");
+        this.delegate = delegate;
+        this.policy = policy;
+        this.sampleRate = sampleRate;
+        val size = Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        events = new Event[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i) {
+            events[i] = new Event();
+            sequences.set(i, i);
+        }
+        consumer = new Thread(this::consume, "AsyncFacade");
+        consumer.setDaemon(true);
+        consumer.start();
+        shutdownHook = new Thread(this::close, "AsyncFacade-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * Returns number of events lost by overflow.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg) {
+        publish(Event.MESSAGE, tag, level, msg, null, null, null, null);
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1) {
+        publish(Event.ARG1, tag, level, format, arg1, null, null, null);
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1, Object arg2) {
+        publish(Event.ARG2, tag, level, format, arg1, arg2, null, null);
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object... args) {
+        publish(Event.ARGS, tag, level, format, null, null, args, null);
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg, Throwable t) {
+        publish(Event.THROWABLE, tag, level, msg, null, null, null, t);
+    }
+
+    private void publish(int kind, String tag, Level level, String format,
+                         Object arg1, Object arg2, Object[] args, Throwable t) {
+        if (!running) { // closed, write directly
+            new Event().set(kind, tag, level, format, arg1, arg2, args, t).dispatch(delegate);
+            return;
+        }
+        val blocking = policy == OverflowPolicy.BLOCK || level.getCode() <= Level.WARN.getCode();
+        if (!blocking && policy == OverflowPolicy.SAMPLE && size() >= events.length - (events.length >> 2)
+                && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        while (true) {
+            val pos = enqueuePos.get();
+            val index = (int) (pos & mask);
+            val dif = sequences.get(index) - pos;
+            if (dif == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    events[index].set(kind, tag, level, format, arg1, arg2, args, t);
+                    sequences.lazySet(index, pos + 1);
+                    if (!running) { // closed meanwhile, the consumer may have exited
+                        drainLeft();
+                    } else if (sleeping) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return;
+                }
+            } else if (dif < 0) { // full
+                if (!running || !consumer.isAlive()) { // nobody will free the space
+                    new Event().set(kind, tag, level, format, arg1, arg2, args, t).dispatch(delegate);
+                    return;
+                } else if (!blocking) {
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(consumer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+    }
+
+    private int size() {
+        return (int) (enqueuePos.get() - consumedPos);
+    }
+
+    private int drain(String[] producerName) {
+        int count = 0;
+        while (count < BATCH_SIZE) {
+            val index = (int) (dequeuePos & mask);
+            if (sequences.get(index) != dequeuePos + 1) {
+                break;
+            }
+            val event = events[index];
+            producerName[0] = event.thread;
+            try {
+                event.dispatch(delegate);
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+            event.clear();
+            sequences.lazySet(index, dequeuePos + events.length);
+            ++dequeuePos;
+            ++count;
+        }
+        producerName[0] = null;
+        if (count > 0) {
+            consumedPos = dequeuePos;
+        }
+        return count;
+    }
+
+    /**
+     * Writes events enqueued after the consumer exited, in the producer thread.
+     */
+    private void drainLeft() {
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (consumer.isAlive()) {
+            return;
+        }
+        val producerName = Log.producerNameSlot();
+        val last = producerName[0];
+        synchronized (events) {
+            while (drain(producerName) > 0) {
+            }
+        }
+        producerName[0] = last;
+        flushDelegate();
+    }
+
+    private void consume() {
+        val producerName = Log.producerNameSlot();
+        long idle = 0;
+        boolean dirty = false;
+        while (true) {
+            if (drain(producerName) > 0) {
+                idle = 0;
+                dirty = true;
+                continue;
+            }
+            if (dirty) { // flush once the queue becomes empty
+                flushDelegate();
+                dirty = false;
+            }
+            if (!running && enqueuePos.get() == dequeuePos) {
+                break;
+            }
+            sleeping = true;
+            if (enqueuePos.get() == dequeuePos) {
+                idle = Math.min(MAX_IDLE_NANOS, idle == 0 ? 1000 : idle << 1);
+                LockSupport.parkNanos(this, idle);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void flushDelegate() {
+        if (delegate instanceof Flushable) {
+            try {
+                ((Flushable) delegate).flush();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Waits until all events logged before calling are written.
+     */
+    @Override
+    public void flush() {
+        val target = enqueuePos.get();
+        while (consumedPos < target && consumer.isAlive()) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        flushDelegate();
+    }
+
+    /**
+     * Writes pending events and stops the consumer thread.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) { // shutting down
+            }
+        }
+    }
+
+    private static final class Event {
+        static final int MESSAGE = 0, ARG1 = 1, ARG2 = 2, ARGS = 3, THROWABLE = 4;
+
+        int kind;
+        String thread;
+        String tag;
+        Level level;
+        String format;
+        Object arg1;
+        Object arg2;
+        Object[] args;
+        Throwable throwable;
+
+        Event set(int kind, String tag, Level level, String format,
+                  Object arg1, Object arg2, Object[] args, Throwable t) {
+            this.kind = kind;
+            this.thread = Thread.currentThread().getName();
+            this.tag = tag;
+            this.level = level;
+            this.format = format;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.args = args;
+            this.throwable = t;
+            return this;
+        }
+
+        void dispatch(Facade facade) {
+            switch (kind) {
+                case MESSAGE:
+                    facade.log(tag, level, format);
+                    break;
+                case ARG1:
+                    facade.log(tag, level, format, arg1);
+                    break;
+                case ARG2:
+                    facade.log(tag, level, format, arg1, arg2);
+                    break;
+                case ARGS:
+                    facade.log(tag, level, format, args);
+                    break;
+                default:
+                    facade.log(tag, level, format, throwable);
+                    break;
+            }
+        }
+
+        void clear() {
+            thread = null;
+            tag = null;
+            level = null;
+            format = null;
+            arg1 = null;
+            arg2 = null;
+            args = null;
+            throwable = null;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.log;
+
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static jclp.log.BinaryLogFacade.*;
+
+/**
+ * Decoder of segment files written by {@link BinaryLogFacade}.
+ * <p>
+ * Each event is rendered as one text line like:
+ * {@code 2017-10-01 12:00:00.000 [main] i/tag: message}.
+ */
+public final class BinaryLogDecoder {
+    private BinaryLogDecoder() {
+    }
+
+    public static void decode(@NonNull File file, @NonNull Appendable out) throws IOException {
+        try (val in = new BufferedInputStream(new FileInputStream(file))) {
+            decode(in, out);
+        }
+    }
+
+    /**
+     * Decodes one segment from specified input stream and appends text lines to output.
+     *
+     * @param in  the input stream
+     * @param out the output
+     * @throws IOException if occur I/O errors or the input is not a valid segment
+     */
+    public static void decode(@NonNull InputStream in, @NonNull Appendable out) throws IOException {
+        val input = new DataInputStream(in);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("not a binary log segment");
+        }
+        val version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported segment version: " + version);
+        }
+        val tags = new HashMap<Integer, String>();
+        val formats = new HashMap<Integer, String>();
+        val threads = new HashMap<Integer, String>();
+        val dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        val sb = new StringBuilder(256);
+        while (true) {
+            int type = input.read();
+            switch (type) {
+                case -1:
+                case END:
+                    return;
+                case TAG:
+                    tags.put(input.readInt(), readString(input));
+                    break;
+                case FORMAT:
+                    formats.put(input.readInt(), readString(input));
+                    break;
+                case THREAD:
+                    threads.put(input.readInt(), readString(input));
+                    break;
+                case EVENT:
+                    sb.setLength(0);
+                    try {
+                        readEvent(input, sb, dateFormat, tags, formats, threads);
+                    } catch (EOFException e) { // segment not finished
+                        return;
+                    }
+                    out.append(sb).append(System.lineSeparator());
+                    break;
+                default:
+                    throw new IOException("invalid record type: " + type);
+            }
+        }
+    }
+
+    private static void readEvent(DataInputStream in, StringBuilder sb, SimpleDateFormat dateFormat,
+                                  Map<Integer, String> tags, Map<Integer, String> formats,
+                                  Map<Integer, String> threads) throws IOException {
+        val millis = in.readLong();
+        val level = levelOf(in.readByte());
+        val thread = threads.get(in.readInt());
+        val tag = tags.get(in.readInt());
+        sb.append(dateFormat.format(new Date(millis))).append(" [").append(thread).append("] ")
+                .append(level != null ? (char) (level.name().charAt(0) + 32) : '?').append('/').append(tag).append(": ");
+        val kind = in.readByte();
+        switch (kind) {
+            case KIND_MESSAGE:
+                sb.append(readString(in));
+                break;
+            case KIND_FORMAT: {
+                val format = formats.get(in.readInt());
+                val args = new Object[in.readUnsignedByte()];
+                for (int i = 0; i < args.length; ++i) {
+                    args[i] = readArg(in);
+                }
+                MessagePattern.of(format).appendTo(sb, args.length, null, null, args);
+                break;
+            }
+            case KIND_THROWABLE:
+                sb.append(readString(in)).append(System.lineSeparator());
+                val trace = readString(in);
+                sb.append(trace.endsWith(System.lineSeparator())
+                        ? trace.substring(0, trace.length() - System.lineSeparator().length())
+                        : trace);
+                break;
+            default:
+                throw new IOException("invalid event kind: " + kind);
+        }
+    }
+
+    private static Level levelOf(int code) {
+        for (val level : Level.values()) {
+            if (level.getCode() == code) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    private static Object readArg(DataInputStream in) throws IOException {
+        val type = in.readByte();
+        switch (type) {
+            case ARG_NULL:
+                return null;
+            case ARG_INT:
+                return in.readInt();
+            case ARG_LONG:
+                return in.readLong();
+            case ARG_DOUBLE:
+                return in.readDouble();
+            case ARG_BOOLEAN:
+                return in.readByte() != 0;
+            case ARG_CHAR:
+                return in.readChar();
+            case ARG_STRING:
+                return readString(in);
+            default:
+                throw new IOException("invalid argument type: " + type);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        val b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes segment files given by arguments to standard output.
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: BinaryLogDecoder <segment>...");
+            System.exit(1);
+        }
+        Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        for (val path : args) {
+            decode(new File(path), out);
+        }
+        out.flush();
+    }
+}
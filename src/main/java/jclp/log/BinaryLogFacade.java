@@ -0,0 +1,403 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.log;
+
+import jclp.Validate;
+import jclp.io.IOUtils;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Facade appending compact binary records to memory-mapped segment files.
+ * <p>
+ * Each event record holds timestamp, level code, ids of thread name, tag and format, and the raw
+ * arguments. Names and formats are interned per segment by definition records written before
+ * first use, so each segment can be decoded alone by {@link BinaryLogDecoder}.
+ * <p>
+ * Segments are named {@code <base>.000001}, {@code <base>.000002}, etc. A new segment is started
+ * when the current one is full, the finished segment is truncated to its content.
+ * <p>
+ * Record layout (big endian), strings are {@code int} byte length and UTF-8 bytes:
+ * <pre>
+ * header:   int MAGIC, short VERSION
+ * TAG:      byte 1, int id, string name
+ * FORMAT:   byte 2, int id, string format
+ * THREAD:   byte 3, int id, string name
+ * EVENT:    byte 4, long millis, byte level, int thread, int tag, byte kind, body
+ *   MESSAGE:   string message
+ *   FORMAT:    int format, byte count, count * (byte type, value)
+ *   THROWABLE: string message, string stack trace
+ * end:      byte 0 or end of file
+ * </pre>
+ */
+public class BinaryLogFacade implements Facade, Flushable, Closeable {
+    static final int MAGIC = 0x4A424C47; // JBLG
+    static final short VERSION = 1;
+
+    static final byte END = 0, TAG = 1, FORMAT = 2, THREAD = 3, EVENT = 4;
+    static final byte KIND_MESSAGE = 0, KIND_FORMAT = 1, KIND_THROWABLE = 2;
+    static final byte ARG_NULL = 0, ARG_INT = 1, ARG_LONG = 2, ARG_DOUBLE = 3, ARG_BOOLEAN = 4, ARG_CHAR = 5, ARG_STRING = 6;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final int HEADER_SIZE = 6;
+
+    @Getter
+    private final File base;
+
+    @Getter
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<String, Integer> tags = new HashMap<>();
+    private final Map<String, Integer> formats = new HashMap<>();
+    private final Map<String, Integer> threads = new HashMap<>();
+
+    private int segmentIndex;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private boolean closed;
+
+    @Getter
+    private long droppedCount;
+
+    public BinaryLogFacade(File base) throws IOException {
+        this(base, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public BinaryLogFacade(@NonNull File base, int segmentSize) throws IOException {
+        Validate.require(segmentSize >= 4096, "segmentSize must >= 4096");
+        this.base = base.getAbsoluteFile();
+        this.segmentSize = segmentSize;
+        val dir = this.base.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("cannot create directory: " + dir);
+        }
+        while (segmentFile(segmentIndex + 1).exists()) {
+            ++segmentIndex;
+        }
+        openSegment();
+    }
+
+    /**
+     * Returns file of segment with specified index.
+     */
+    public File segmentFile(int index) {
+        return new File(base.getPath() + String.format(".%06d", index));
+    }
+
+    public File getCurrentSegment() {
+        return segmentFile(segmentIndex);
+    }
+
+    private void openSegment() throws IOException {
+        raf = new RandomAccessFile(segmentFile(++segmentIndex), "rw");
+        try {
+            raf.setLength(0);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(raf);
+            throw e;
+        }
+        buffer.putInt(MAGIC).putShort(VERSION);
+        tags.clear();
+        formats.clear();
+        threads.clear();
+    }
+
+    private void closeSegment() throws IOException {
+        val length = buffer.position();
+        try {
+            buffer.force();
+        } finally {
+            IOUtils.unmap(buffer);
+            buffer = null;
+            try {
+                raf.setLength(length);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    /**
+     * Makes sure that {@code size} bytes are free in current segment.
+     * <p>
+     * If a new segment cannot be started, the facade is closed.
+     *
+     * @return {@literal false} if the size is larger than a segment
+     */
+    private boolean ensure(int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return true;
+        } else if (size > segmentSize - HEADER_SIZE) {
+            return false;
+        }
+        try {
+            closeSegment();
+            openSegment();
+        } catch (IOException e) {
+            closed = true;
+            buffer = null;
+            throw e;
+        }
+        return true;
+    }
+
+    private int intern(Map<String, Integer> names, byte type, String name) {
+        Integer id = names.get(name);
+        if (id == null) {
+            id = names.size() + 1;
+            names.put(name, id);
+            buffer.put(type).putInt(id);
+            putString(name);
+        }
+        return id;
+    }
+
+    private static int maxSize(String s) {
+        return 4 + (s != null ? s.length() * 3 : 4);
+    }
+
+    private void putString(String s) {
+        if (s == null) {
+            s = "null";
+        }
+        val start = buffer.position();
+        buffer.position(start + 4);
+        for (int i = 0, n = s.length(); i < n; ++i) {
+            val c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                val cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    /**
+     * Returns the argument if it's written as raw value, otherwise converts it to string.
+     */
+    private static Object valueOf(Object arg) {
+        if (arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Short
+                || arg instanceof Byte || arg instanceof Long || arg instanceof Double || arg instanceof Float
+                || arg instanceof Boolean || arg instanceof Character) {
+            return arg;
+        }
+        return String.valueOf(arg);
+    }
+
+    private static int maxSize(Object arg) {
+        if (arg == null || arg instanceof Boolean) {
+            return 2;
+        } else if (arg instanceof Long || arg instanceof Double || arg instanceof Float) {
+            return 9;
+        } else if (arg instanceof Number) {
+            return 5;
+        } else if (arg instanceof Character) {
+            return 3;
+        }
+        return 1 + maxSize((String) arg);
+    }
+
+    private void putArg(Object arg) {
+        if (arg == null) {
+            buffer.put(ARG_NULL);
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            buffer.put(ARG_INT).putInt(((Number) arg).intValue());
+        } else if (arg instanceof Long) {
+            buffer.put(ARG_LONG).putLong((Long) arg);
+        } else if (arg instanceof Double || arg instanceof Float) {
+            buffer.put(ARG_DOUBLE).putDouble(((Number) arg).doubleValue());
+        } else if (arg instanceof Boolean) {
+            buffer.put(ARG_BOOLEAN).put((byte) ((Boolean) arg ? 1 : 0));
+        } else if (arg instanceof Character) {
+            buffer.put(ARG_CHAR).putChar((Character) arg);
+        } else {
+            buffer.put(ARG_STRING);
+            putString((String) arg);
+        }
+    }
+
+    /**
+     * Writes the event header, interning names and format when needed.
+     *
+     * @return id of the format or 0, {@literal -1} if the event is dropped
+     */
+    private int begin(String tag, Level level, String thread, String format, int bodySize) throws IOException {
+        val size = maxSize(tag) + maxSize(thread) + 28 + bodySize;
+        if (!ensure(format != null ? size + 5 + maxSize(format) : size)) {
+            ++droppedCount;
+            return -1;
+        }
+        val threadId = intern(threads, THREAD, thread);
+        val tagId = intern(tags, TAG, tag);
+        val formatId = format != null ? intern(formats, FORMAT, format) : 0;
+        buffer.put(EVENT).putLong(System.currentTimeMillis()).put((byte) level.getCode()).putInt(threadId).putInt(tagId);
+        return formatId;
+    }
+
+    private void write(String tag, Level level, String format, int count, Object arg1, Object arg2, Object[] args) {
+        // convert before locking, toString() may log or return another string when called again
+        int size = 6;
+        if (args != null) {
+            val values = new Object[count];
+            for (int i = 0; i < count; ++i) {
+                values[i] = valueOf(args[i]);
+                size += maxSize(values[i]);
+            }
+            args = values;
+        } else {
+            arg1 = valueOf(arg1);
+            arg2 = valueOf(arg2);
+            size += (count > 0 ? maxSize(arg1) : 0) + (count > 1 ? maxSize(arg2) : 0);
+        }
+        val thread = Log.getThreadName();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            val formatId = begin(tag, level, thread, format != null ? format : "null", size);
+            if (formatId < 0) {
+                return;
+            }
+            buffer.put(KIND_FORMAT).putInt(formatId).put((byte) count);
+            for (int i = 0; i < count; ++i) {
+                putArg(args != null ? args[i] : i == 0 ? arg1 : arg2);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg) {
+        val thread = Log.getThreadName();
+        lock.lock();
+        try {
+            if (closed || begin(tag, level, thread, null, 1 + maxSize(msg)) < 0) {
+                return;
+            }
+            buffer.put(KIND_MESSAGE);
+            putString(msg);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1) {
+        write(tag, level, format, 1, arg1, null, null);
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1, Object arg2) {
+        write(tag, level, format, 2, arg1, arg2, null);
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object... args) {
+        if (args == null) {
+            write(tag, level, format, 0, null, null, null);
+        } else if (args.length > 255) { // count of arguments is a byte, write as plain message
+            val sb = new StringBuilder();
+            MessagePattern.of(format != null ? format : "null").appendTo(sb, args.length, null, null, args);
+            log(tag, level, sb.toString());
+        } else {
+            write(tag, level, format, args.length, null, null, args);
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg, Throwable t) {
+        String trace = "null";
+        if (t != null) {
+            val sw = new StringWriter();
+            t.printStackTrace(new PrintWriter(sw));
+            trace = sw.toString();
+        }
+        val thread = Log.getThreadName();
+        lock.lock();
+        try {
+            if (closed || begin(tag, level, thread, null, 1 + maxSize(msg) + maxSize(trace)) < 0) {
+                return;
+            }
+            buffer.put(KIND_THROWABLE);
+            putString(msg);
+            putString(trace);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes content of current segment to the storage device.
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            if (!closed) {
+                buffer.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                closeSegment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -16,58 +16,184 @@
 
 package jclp.log;
 
-import java.text.MessageFormat;
+import lombok.val;
 
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Facade printing messages to standard output and error.
+ * <p>
+ * Messages are formatted by compiled patterns into a buffer of current thread and encoded
+ * to bytes directly with charset of the standard stream, so no intermediate string is created.
+ * Streams replaced by {@link System#setOut(PrintStream)} encode the message themselves.
+ */
 public class DefaultFacade implements Facade {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final ThreadLocal<Output> outputs = ThreadLocal.withInitial(Output::new);
+
+    // standard streams created by JVM and their charsets
+    private static final PrintStream STDOUT = System.out;
+    private static final PrintStream STDERR = System.err;
+    private static final Charset STDOUT_CHARSET = charsetOf("stdout.encoding");
+    private static final Charset STDERR_CHARSET = charsetOf("stderr.encoding");
+
     @Override
     public void log(String tag, Level level, String msg) {
-        print(level, format(tag, level, msg));
+        val out = acquire();
+        try {
+            header(out.sb, tag, level).append(msg);
+            print(level, out);
+        } finally {
+            out.busy = false;
+        }
     }
 
     @Override
     public void log(String tag, Level level, String format, Object arg1) {
-        print(level, format(tag, level, format, arg1));
+        val out = acquire();
+        try {
+            MessagePattern.of(format).appendTo(header(out.sb, tag, level), 1, arg1, null, null);
+            print(level, out);
+        } finally {
+            out.busy = false;
+        }
     }
 
     @Override
     public void log(String tag, Level level, String format, Object arg1, Object arg2) {
-        print(level, format(tag, level, format, arg1, arg2));
+        val out = acquire();
+        try {
+            MessagePattern.of(format).appendTo(header(out.sb, tag, level), 2, arg1, arg2, null);
+            print(level, out);
+        } finally {
+            out.busy = false;
+        }
     }
 
     @Override
     public void log(String tag, Level level, String format, Object... args) {
-        print(level, format(tag, level, format, args));
+        val out = acquire();
+        try {
+            MessagePattern.of(format).appendTo(header(out.sb, tag, level), args != null ? args.length : 0, null, null, args);
+            print(level, out);
+        } finally {
+            out.busy = false;
+        }
     }
 
     @Override
     public void log(String tag, Level level, String msg, Throwable t) {
-        print(level, format(tag, level, msg));
+        log(tag, level, msg);
         t.printStackTrace();
     }
 
-    private void print(Level level, String msg) {
-        if (level.getCode() > Level.WARN.getCode()) {
-            System.out.println(msg);
-        } else {
-            System.err.println(msg);
+    /**
+     * Gets output of current thread, or a new one if it's in use by an outer call,
+     * e.g. {@code toString()} of an argument logs too.
+     */
+    private static Output acquire() {
+        val out = outputs.get();
+        if (out.busy) {
+            return new Output();
         }
+        out.busy = true;
+        return out;
     }
 
-    private static final String PATTERN = "[%s] %c/%s: %s";
-
-    private String format(String tag, Level level, String msg) {
-        return String.format(PATTERN, Thread.currentThread().getName(), level.name().charAt(0) + 32, tag, msg);
+    private StringBuilder header(StringBuilder sb, String tag, Level level) {
+        sb.setLength(0);
+        return sb.append('[').append(Log.getThreadName()).append("] ")
+                .append((char) (level.name().charAt(0) + 32)).append('/').append(tag).append(": ");
     }
 
-    private String format(String tag, Level level, String format, Object arg1) {
-        return String.format(PATTERN, Thread.currentThread().getName(), level.name().charAt(0) + 32, tag, MessageFormat.format(format, arg1));
+    private void print(Level level, Output out) {
+        out.sb.append(LINE_SEPARATOR);
+        out.writeTo(level.getCode() > Level.WARN.getCode() ? System.out : System.err);
     }
 
-    private String format(String tag, Level level, String format, Object arg1, Object arg2) {
-        return String.format(PATTERN, Thread.currentThread().getName(), level.name().charAt(0) + 32, tag, MessageFormat.format(format, arg1, arg2));
+    /**
+     * Gets charset of standard stream by its property, {@code stdout.encoding} since Java 18,
+     * {@code sun.stdout.encoding} before that, otherwise the stream uses the default charset.
+     *
+     * @param property name of the property, {@code stdout.encoding} or {@code stderr.encoding}
+     * @return the charset
+     */
+    static Charset charsetOf(String property) {
+        for (val name : new String[]{property, "sun." + property}) {
+            val value = System.getProperty(name);
+            if (value != null) {
+                try {
+                    return Charset.forName(value);
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+        }
+        return Charset.defaultCharset();
     }
 
-    private String format(String tag, Level level, String format, Object... args) {
-        return String.format(PATTERN, Thread.currentThread().getName(), level.name().charAt(0) + 32, tag, MessageFormat.format(format, args));
+    private static final class Output {
+        private final StringBuilder sb = new StringBuilder(256);
+        private boolean busy;
+        // encoders of the last used output and error streams
+        private final PrintStream[] streams = new PrintStream[2];
+        private final CharsetEncoder[] encoders = new CharsetEncoder[2];
+        private char[] chars = new char[256];
+        private CharBuffer cb = CharBuffer.wrap(chars);
+        private final ByteBuffer bb = ByteBuffer.allocate(1024);
+
+        private CharsetEncoder encoderFor(PrintStream stream) {
+            val i = stream == System.err ? 1 : 0;
+            if (streams[i] != stream) {
+                streams[i] = stream;
+                val charset = stream == STDOUT ? STDOUT_CHARSET : stream == STDERR ? STDERR_CHARSET : null;
+                encoders[i] = charset == null ? null : charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            return encoders[i];
+        }
+
+        void writeTo(PrintStream stream) {
+            val encoder = encoderFor(stream);
+            if (encoder == null) { // let the stream encode it, costs a string
+                stream.append(sb);
+                return;
+            }
+            val length = sb.length();
+            if (length > chars.length) {
+                chars = new char[Math.max(length, chars.length << 1)];
+                cb = CharBuffer.wrap(chars);
+            }
+            sb.getChars(0, length, chars, 0);
+            cb.clear();
+            cb.limit(length);
+            encoder.reset();
+            bb.clear();
+            boolean flushed = false;
+            synchronized (stream) { // keep chunks of one line together
+                while (true) {
+                    val result = flushed ? encoder.flush(bb) : encoder.encode(cb, bb, true);
+                    if (result.isOverflow()) {
+                        stream.write(bb.array(), 0, bb.position());
+                        bb.clear();
+                    } else if (!flushed) {
+                        flushed = true;
+                    } else {
+                        break;
+                    }
+                }
+                stream.write(bb.array(), 0, bb.position());
+            }
+            if (sb.capacity() > 8192) { // release big buffer
+                sb.setLength(256);
+                sb.trimToSize();
+            }
+        }
     }
 }
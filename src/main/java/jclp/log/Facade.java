@@ -23,6 +23,14 @@ public interface Facade {
 
     void log(String tag, Level level, String format, Object arg1, Object arg2);
 
+    default void log(String tag, Level level, String format, Object arg1, Object arg2, Object arg3) {
+        log(tag, level, format, new Object[]{arg1, arg2, arg3});
+    }
+
+    default void log(String tag, Level level, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        log(tag, level, format, new Object[]{arg1, arg2, arg3, arg4});
+    }
+
     void log(String tag, Level level, String format, Object... args);
 
     void log(String tag, Level level, String msg, Throwable t);
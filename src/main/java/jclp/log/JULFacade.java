@@ -24,35 +24,35 @@ public class JULFacade implements Facade {
     @Override
     public void log(String tag, Level level, String msg) {
         val logger = Logger.getLogger(tag);
-        logger.setLevel(mapLevel(Log.getLevel()));
+        logger.setLevel(mapLevel(Log.getLevel(tag)));
         logger.log(mapLevel(level), msg);
     }
 
     @Override
     public void log(String tag, Level level, String format, Object arg1) {
         val logger = Logger.getLogger(tag);
-        logger.setLevel(mapLevel(Log.getLevel()));
+        logger.setLevel(mapLevel(Log.getLevel(tag)));
         logger.log(mapLevel(level), format, arg1);
     }
 
     @Override
     public void log(String tag, Level level, String format, Object arg1, Object arg2) {
         val logger = Logger.getLogger(tag);
-        logger.setLevel(mapLevel(Log.getLevel()));
+        logger.setLevel(mapLevel(Log.getLevel(tag)));
         logger.log(mapLevel(level), format, new Object[]{arg1, arg2});
     }
 
     @Override
     public void log(String tag, Level level, String format, Object... args) {
         val logger = Logger.getLogger(tag);
-        logger.setLevel(mapLevel(Log.getLevel()));
+        logger.setLevel(mapLevel(Log.getLevel(tag)));
         logger.log(mapLevel(level), format, args);
     }
 
     @Override
     public void log(String tag, Level level, String msg, Throwable t) {
         val logger = Logger.getLogger(tag);
-        logger.setLevel(mapLevel(Log.getLevel()));
+        logger.setLevel(mapLevel(Log.getLevel(tag)));
         logger.log(mapLevel(level), msg, t);
     }
 
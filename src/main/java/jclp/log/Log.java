@@ -19,16 +19,29 @@ package jclp.log;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import static jclp.log.Level.*;
 
+/**
+ * Static logging API, messages are passed to the {@link Facade} when the level is enabled for the tag.
+ * <p>
+ * Overloads with fixed arguments (up to four) and {@code Supplier} of message cost no allocation when
+ * the level is disabled, unlike the varargs overload. Suppliers are only called when enabled, but a
+ * lambda capturing local variables is still created by the caller.
+ */
 public final class Log {
     private Log() {
     }
 
     @Getter
-    @Setter
-    @NonNull
     private static Level level = INFO;
 
     @Getter
@@ -36,158 +49,445 @@ public final class Log {
     @NonNull
     private static Facade facade = new DefaultFacade();
 
+    /**
+     * Name of the thread that logged the message being written, set by consumer of {@link AsyncFacade}.
+     */
+    private static final ThreadLocal<String[]> producerNames = ThreadLocal.withInitial(() -> new String[1]);
+
+    private static final Map<String, Level> tagLevels = new HashMap<>();
+
+    private static final Map<String, Level> prefixLevels = new HashMap<>();
+
+    /**
+     * Resolved levels, rebuilt when any level is changed.
+     */
+    private static volatile LevelTable table = new LevelTable(INFO.getCode(), tagLevels, prefixLevels);
+
+    public static synchronized void setLevel(@NonNull Level level) {
+        Log.level = level;
+        table = new LevelTable(level.getCode(), tagLevels, prefixLevels);
+    }
+
+    /**
+     * Overrides level of specified tag.
+     *
+     * @param tag   the tag
+     * @param level the level, {@code null} to remove the override
+     */
+    public static synchronized void setLevel(@NonNull String tag, Level level) {
+        if (level != null) {
+            tagLevels.put(tag, level);
+        } else {
+            tagLevels.remove(tag);
+        }
+        table = new LevelTable(Log.level.getCode(), tagLevels, prefixLevels);
+    }
+
+    /**
+     * Overrides level of tags starting with specified prefix, the longest prefix takes effect.
+     *
+     * @param prefix prefix of tags
+     * @param level  the level, {@code null} to remove the override
+     */
+    public static synchronized void setPrefixLevel(@NonNull String prefix, Level level) {
+        if (level != null) {
+            prefixLevels.put(prefix, level);
+        } else {
+            prefixLevels.remove(prefix);
+        }
+        table = new LevelTable(Log.level.getCode(), tagLevels, prefixLevels);
+    }
+
+    /**
+     * Removes all overrides of tags and prefixes.
+     */
+    public static synchronized void clearLevels() {
+        tagLevels.clear();
+        prefixLevels.clear();
+        table = new LevelTable(Log.level.getCode(), tagLevels, prefixLevels);
+    }
+
+    /**
+     * Returns effective level of specified tag.
+     */
+    public static Level getLevel(String tag) {
+        val code = table.codeOf(tag);
+        for (val level : Level.values()) {
+            if (level.getCode() == code) {
+                return level;
+            }
+        }
+        return OFF;
+    }
+
+    /**
+     * Gets name of the thread that logged the message being written.
+     * <p>
+     * Facades should print it instead of name of current thread, they differ when messages are
+     * written by the consumer thread of {@link AsyncFacade}.
+     */
+    public static String getThreadName() {
+        val name = producerNames.get()[0];
+        return name != null ? name : Thread.currentThread().getName();
+    }
+
+    /**
+     * Returns slot of producer thread name for current thread.
+     */
+    static String[] producerNameSlot() {
+        return producerNames.get();
+    }
+
+    /**
+     * Tests whether specified level is enabled by the global level.
+     */
     public static boolean isEnable(Level level) {
-        return level.getCode() <= Log.level.getCode();
+        return level.getCode() <= table.globalCode;
+    }
+
+    /**
+     * Tests whether specified level is enabled for the tag.
+     * <p>
+     * If the level is disabled for all tags, it costs one volatile read and a compare.
+     */
+    public static boolean isEnable(String tag, Level level) {
+        val table = Log.table;
+        return level.getCode() <= table.maxCode && level.getCode() <= table.codeOf(tag);
+    }
+
+    private static final class LevelTable {
+        private static final int MAX_RESOLVED_TAGS = 4096;
+
+        /**
+         * The most verbose code of global level and all overrides.
+         */
+        final int maxCode;
+
+        final int globalCode;
+
+        private final Map<String, Integer> tags;
+
+        // sorted by length, longest first
+        private final String[] prefixes;
+        private final int[] prefixCodes;
+
+        private final Map<String, Integer> resolved = new ConcurrentHashMap<>();
+
+        LevelTable(int globalCode, Map<String, Level> tagLevels, Map<String, Level> prefixLevels) {
+            this.globalCode = globalCode;
+            int maxCode = globalCode;
+            tags = new HashMap<>();
+            for (val e : tagLevels.entrySet()) {
+                tags.put(e.getKey(), e.getValue().getCode());
+                maxCode = Math.max(maxCode, e.getValue().getCode());
+            }
+            val names = new ArrayList<String>(prefixLevels.keySet());
+            Collections.sort(names, (a, b) -> b.length() - a.length());
+            prefixes = names.toArray(new String[names.size()]);
+            prefixCodes = new int[prefixes.length];
+            for (int i = 0; i < prefixes.length; ++i) {
+                prefixCodes[i] = prefixLevels.get(prefixes[i]).getCode();
+                maxCode = Math.max(maxCode, prefixCodes[i]);
+            }
+            this.maxCode = maxCode;
+        }
+
+        int codeOf(String tag) {
+            if (tag == null || tags.isEmpty() && prefixes.length == 0) {
+                return globalCode;
+            }
+            Integer code = resolved.get(tag);
+            if (code == null) {
+                code = resolve(tag);
+                if (resolved.size() < MAX_RESOLVED_TAGS) {
+                    resolved.put(tag, code);
+                }
+            }
+            return code;
+        }
+
+        private int resolve(String tag) {
+            val code = tags.get(tag);
+            if (code != null) {
+                return code;
+            }
+            for (int i = 0; i < prefixes.length; ++i) {
+                if (tag.startsWith(prefixes[i])) {
+                    return prefixCodes[i];
+                }
+            }
+            return globalCode;
+        }
     }
 
     public static void t(String tag, String msg) {
-        if (isEnable(TRACE)) {
+        if (isEnable(tag, TRACE)) {
             facade.log(tag, TRACE, msg);
         }
     }
 
     public static void t(String tag, String format, Object arg1) {
-        if (isEnable(TRACE))
+        if (isEnable(tag, TRACE))
             facade.log(tag, TRACE, format, arg1);
     }
 
     public static void t(String tag, String format, Object arg1, Object arg2) {
-        if (isEnable(TRACE))
+        if (isEnable(tag, TRACE))
             facade.log(tag, TRACE, format, arg1, arg2);
     }
 
+    public static void t(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnable(tag, TRACE))
+            facade.log(tag, TRACE, format, arg1, arg2, arg3);
+    }
+
+    public static void t(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnable(tag, TRACE))
+            facade.log(tag, TRACE, format, arg1, arg2, arg3, arg4);
+    }
+
     public static void t(String tag, String format, Object... args) {
-        if (isEnable(TRACE))
+        if (isEnable(tag, TRACE))
             facade.log(tag, TRACE, format, args);
     }
 
     public static void t(String tag, String msg, Throwable t) {
-        if (isEnable(TRACE))
+        if (isEnable(tag, TRACE))
             facade.log(tag, TRACE, msg, t);
     }
 
+    public static void t(String tag, Supplier<String> msg) {
+        if (isEnable(tag, TRACE))
+            facade.log(tag, TRACE, msg.get());
+    }
+
+    public static void t(String tag, Supplier<String> msg, Throwable t) {
+        if (isEnable(tag, TRACE))
+            facade.log(tag, TRACE, msg.get(), t);
+    }
+
     public static void d(String tag, String msg) {
-        if (isEnable(DEBUG))
+        if (isEnable(tag, DEBUG))
             facade.log(tag, DEBUG, msg);
     }
 
     public static void d(String tag, String format, Object arg1) {
-        if (isEnable(DEBUG))
+        if (isEnable(tag, DEBUG))
             facade.log(tag, DEBUG, format, arg1);
     }
 
     public static void d(String tag, String format, Object arg1, Object arg2) {
-        if (isEnable(DEBUG))
+        if (isEnable(tag, DEBUG))
             facade.log(tag, DEBUG, format, arg1, arg2);
     }
 
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnable(tag, DEBUG))
+            facade.log(tag, DEBUG, format, arg1, arg2, arg3);
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnable(tag, DEBUG))
+            facade.log(tag, DEBUG, format, arg1, arg2, arg3, arg4);
+    }
+
     public static void d(String tag, String format, Object... args) {
-        if (isEnable(DEBUG))
+        if (isEnable(tag, DEBUG))
             facade.log(tag, DEBUG, format, args);
     }
 
     public static void d(String tag, String msg, Throwable t) {
-        if (isEnable(DEBUG))
+        if (isEnable(tag, DEBUG))
             facade.log(tag, DEBUG, msg, t);
     }
 
+    public static void d(String tag, Supplier<String> msg) {
+        if (isEnable(tag, DEBUG))
+            facade.log(tag, DEBUG, msg.get());
+    }
+
+    public static void d(String tag, Supplier<String> msg, Throwable t) {
+        if (isEnable(tag, DEBUG))
+            facade.log(tag, DEBUG, msg.get(), t);
+    }
+
     public static void i(String tag, String msg) {
-        if (isEnable(INFO))
+        if (isEnable(tag, INFO))
             facade.log(tag, INFO, msg);
     }
 
     public static void i(String tag, String format, Object arg1) {
-        if (isEnable(INFO))
+        if (isEnable(tag, INFO))
             facade.log(tag, INFO, format, arg1);
     }
 
     public static void i(String tag, String format, Object arg1, Object arg2) {
-        if (isEnable(INFO))
+        if (isEnable(tag, INFO))
             facade.log(tag, INFO, format, arg1, arg2);
     }
 
+    public static void i(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnable(tag, INFO))
+            facade.log(tag, INFO, format, arg1, arg2, arg3);
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnable(tag, INFO))
+            facade.log(tag, INFO, format, arg1, arg2, arg3, arg4);
+    }
+
     public static void i(String tag, String format, Object... args) {
-        if (isEnable(INFO))
+        if (isEnable(tag, INFO))
             facade.log(tag, INFO, format, args);
     }
 
     public static void i(String tag, String msg, Throwable t) {
-        if (isEnable(INFO))
+        if (isEnable(tag, INFO))
             facade.log(tag, INFO, msg, t);
     }
 
+    public static void i(String tag, Supplier<String> msg) {
+        if (isEnable(tag, INFO))
+            facade.log(tag, INFO, msg.get());
+    }
+
+    public static void i(String tag, Supplier<String> msg, Throwable t) {
+        if (isEnable(tag, INFO))
+            facade.log(tag, INFO, msg.get(), t);
+    }
+
     public static void w(String tag, String msg) {
-        if (isEnable(WARN))
+        if (isEnable(tag, WARN))
             facade.log(tag, WARN, msg);
     }
 
     public static void w(String tag, String format, Object arg1) {
-        if (isEnable(WARN))
+        if (isEnable(tag, WARN))
             facade.log(tag, WARN, format, arg1);
     }
 
     public static void w(String tag, String format, Object arg1, Object arg2) {
-        if (isEnable(WARN))
+        if (isEnable(tag, WARN))
             facade.log(tag, WARN, format, arg1, arg2);
     }
 
+    public static void w(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnable(tag, WARN))
+            facade.log(tag, WARN, format, arg1, arg2, arg3);
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnable(tag, WARN))
+            facade.log(tag, WARN, format, arg1, arg2, arg3, arg4);
+    }
+
     public static void w(String tag, String format, Object... args) {
-        if (isEnable(WARN))
+        if (isEnable(tag, WARN))
             facade.log(tag, WARN, format, args);
     }
 
     public static void w(String tag, String msg, Throwable t) {
-        if (isEnable(WARN))
+        if (isEnable(tag, WARN))
             facade.log(tag, WARN, msg, t);
     }
 
+    public static void w(String tag, Supplier<String> msg) {
+        if (isEnable(tag, WARN))
+            facade.log(tag, WARN, msg.get());
+    }
+
+    public static void w(String tag, Supplier<String> msg, Throwable t) {
+        if (isEnable(tag, WARN))
+            facade.log(tag, WARN, msg.get(), t);
+    }
+
     public static void e(String tag, String msg) {
-        if (isEnable(ERROR))
+        if (isEnable(tag, ERROR))
             facade.log(tag, ERROR, msg);
     }
 
     public static void e(String tag, String format, Object arg1) {
-        if (isEnable(ERROR))
+        if (isEnable(tag, ERROR))
             facade.log(tag, ERROR, format, arg1);
     }
 
     public static void e(String tag, String format, Object arg1, Object arg2) {
-        if (isEnable(ERROR))
+        if (isEnable(tag, ERROR))
             facade.log(tag, ERROR, format, arg1, arg2);
     }
 
+    public static void e(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnable(tag, ERROR))
+            facade.log(tag, ERROR, format, arg1, arg2, arg3);
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnable(tag, ERROR))
+            facade.log(tag, ERROR, format, arg1, arg2, arg3, arg4);
+    }
+
     public static void e(String tag, String format, Object... args) {
-        if (isEnable(ERROR))
+        if (isEnable(tag, ERROR))
             facade.log(tag, ERROR, format, args);
     }
 
     public static void e(String tag, String msg, Throwable t) {
-        if (isEnable(ERROR))
+        if (isEnable(tag, ERROR))
             facade.log(tag, ERROR, msg, t);
     }
 
+    public static void e(String tag, Supplier<String> msg) {
+        if (isEnable(tag, ERROR))
+            facade.log(tag, ERROR, msg.get());
+    }
+
+    public static void e(String tag, Supplier<String> msg, Throwable t) {
+        if (isEnable(tag, ERROR))
+            facade.log(tag, ERROR, msg.get(), t);
+    }
+
     public static void f(String tag, String msg) {
-        if (isEnable(FATAL))
+        if (isEnable(tag, FATAL))
             facade.log(tag, FATAL, msg);
     }
 
     public static void f(String tag, String format, Object arg1) {
-        if (isEnable(FATAL))
+        if (isEnable(tag, FATAL))
             facade.log(tag, FATAL, format, arg1);
     }
 
     public static void f(String tag, String format, Object arg1, Object arg2) {
-        if (isEnable(FATAL))
+        if (isEnable(tag, FATAL))
             facade.log(tag, FATAL, format, arg1, arg2);
     }
 
+    public static void f(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnable(tag, FATAL))
+            facade.log(tag, FATAL, format, arg1, arg2, arg3);
+    }
+
+    public static void f(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnable(tag, FATAL))
+            facade.log(tag, FATAL, format, arg1, arg2, arg3, arg4);
+    }
+
     public static void f(String tag, String format, Object... args) {
-        if (isEnable(FATAL))
+        if (isEnable(tag, FATAL))
             facade.log(tag, FATAL, format, args);
     }
 
     public static void f(String tag, String msg, Throwable t) {
-        if (isEnable(FATAL))
+        if (isEnable(tag, FATAL))
             facade.log(tag, FATAL, msg, t);
     }
+
+    public static void f(String tag, Supplier<String> msg) {
+        if (isEnable(tag, FATAL))
+            facade.log(tag, FATAL, msg.get());
+    }
+
+    public static void f(String tag, Supplier<String> msg, Throwable t) {
+        if (isEnable(tag, FATAL))
+            facade.log(tag, FATAL, msg.get(), t);
+    }
 }
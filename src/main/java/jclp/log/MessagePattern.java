@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.log;
+
+import lombok.val;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled {@code {0}}-style message pattern, appends arguments without intermediate strings.
+ * <p>
+ * Only plain {@code {n}} placeholders are compiled, arguments are appended by their value without
+ * locale formatting. Patterns with quotes or format types fall back to {@code MessageFormat}.
+ */
+final class MessagePattern {
+    private static final int MAX_CACHED_PATTERNS = 4096;
+
+    private static final ConcurrentMap<String, MessagePattern> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Literal parts, one more than indexes, {@code null} if the pattern is not compiled.
+     */
+    private final String[] literals;
+
+    private final int[] indexes;
+
+    private final String pattern;
+
+    private MessagePattern(String pattern, String[] literals, int[] indexes) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.indexes = indexes;
+    }
+
+    static MessagePattern of(String pattern) {
+        MessagePattern mp = cache.get(pattern);
+        if (mp == null) {
+            mp = compile(pattern);
+            if (cache.size() < MAX_CACHED_PATTERNS) {
+                cache.putIfAbsent(pattern, mp);
+            }
+        }
+        return mp;
+    }
+
+    static MessagePattern compile(String pattern) {
+        if (pattern.indexOf('\'') >= 0) {
+            return new MessagePattern(pattern, null, null);
+        }
+        val literals = new ArrayList<String>();
+        val indexes = new ArrayList<Integer>();
+        int from = 0;
+        for (int i = pattern.indexOf('{'); i >= 0; i = pattern.indexOf('{', i + 1)) {
+            int end = i + 1, index = 0;
+            while (end < pattern.length() && Character.isDigit(pattern.charAt(end)) && index < 1000) {
+                index = index * 10 + pattern.charAt(end++) - '0';
+            }
+            if (end == i + 1 || end >= pattern.length() || pattern.charAt(end) != '}') {
+                return new MessagePattern(pattern, null, null);
+            }
+            literals.add(pattern.substring(from, i));
+            indexes.add(index);
+            from = end + 1;
+            i = end;
+        }
+        literals.add(pattern.substring(from));
+        val indexArray = new int[indexes.size()];
+        for (int i = 0; i < indexArray.length; ++i) {
+            indexArray[i] = indexes.get(i);
+        }
+        return new MessagePattern(pattern, literals.toArray(new String[literals.size()]), indexArray);
+    }
+
+    void appendTo(StringBuilder sb, int count, Object arg1, Object arg2, Object[] args) {
+        if (literals == null) {
+            sb.append(MessageFormat.format(pattern, args != null ? args : count == 0 ? new Object[0] : count == 1 ? new Object[]{arg1} : new Object[]{arg1, arg2}));
+            return;
+        }
+        sb.append(literals[0]);
+        for (int i = 0; i < indexes.length; ++i) {
+            val index = indexes[i];
+            if (index < count) {
+                appendValue(sb, args != null ? args[index] : index == 0 ? arg1 : arg2);
+            } else {
+                sb.append('{').append(index).append('}');
+            }
+            sb.append(literals[i + 1]);
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof String) {
+            sb.append((String) value);
+        } else if (value instanceof Integer) {
+            sb.append(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            sb.append(((Long) value).longValue());
+        } else if (value instanceof Character) {
+            sb.append(((Character) value).charValue());
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else if (value instanceof CharSequence) {
+            sb.append((CharSequence) value);
+        } else {
+            sb.append(value);
+        }
+    }
+}
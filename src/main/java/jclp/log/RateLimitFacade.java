@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.log;
+
+import jclp.Validate;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Facade decorator limiting rate of messages per tag and format.
+ * <p>
+ * In each period, the first {@code burst} messages of one call site are passed to delegate, after
+ * that only one in every {@code sampleRate} messages. Counters are lock free. Number of suppressed
+ * messages is reported with {@code "suppressed N messages: <format>"} when the period ends,
+ * either by the next message of the call site or by a background sweep.
+ * <p>
+ * Plain messages without arguments are keyed by the message itself, at most {@code maxKeys}
+ * distinct keys are tracked and messages of other keys are not limited. Call sites without any
+ * message in a whole period are evicted by the sweep.
+ */
+public class RateLimitFacade implements Facade, Flushable, Closeable {
+    public static final int DEFAULT_BURST = 10;
+    public static final int DEFAULT_SAMPLE_RATE = 100;
+    public static final long DEFAULT_PERIOD_MILLIS = 5000;
+    public static final int DEFAULT_MAX_KEYS = 4096;
+
+    // key for null tag or format, compared by identity
+    private static final String NULL_KEY = new String("null");
+
+    @Getter
+    private final Facade delegate;
+
+    @Getter
+    private final int burst;
+
+    @Getter
+    private final int sampleRate;
+
+    @Getter
+    private final long periodMillis;
+
+    @Getter
+    private final int maxKeys;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Counter>> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger keyCount = new AtomicInteger();
+    private final LongAdder suppressedCount = new LongAdder();
+    private final ScheduledExecutorService sweeper;
+
+    public RateLimitFacade(Facade delegate) {
+        this(delegate, DEFAULT_BURST, DEFAULT_SAMPLE_RATE, DEFAULT_PERIOD_MILLIS, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * Constructs rate limiter and starts the background sweep.
+     *
+     * @param delegate     the facade receiving passed messages and summaries
+     * @param burst        number of messages passed per call site in each period
+     * @param sampleRate   pass one in every {@code sampleRate} messages after burst, {@literal 0} to drop all
+     * @param periodMillis length of period in milliseconds
+     * @param maxKeys      max number of tracked call sites
+     */
+    public RateLimitFacade(@NonNull Facade delegate, int burst, int sampleRate, long periodMillis, int maxKeys) {
+        Validate.require(burst >= 0, "burst must >= 0");
+        Validate.require(sampleRate >= 0, "sampleRate must >= 0");
+        Validate.require(periodMillis > 0, "periodMillis must > 0");
+        Validate.require(maxKeys > 0, "maxKeys must > 0");
+        this.delegate = delegate;
+        this.burst = burst;
+        this.sampleRate = sampleRate;
+        this.periodMillis = periodMillis;
+        this.maxKeys = maxKeys;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "RateLimitFacade");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns total number of suppressed messages.
+     */
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg) {
+        if (acquire(tag, level, msg)) {
+            delegate.log(tag, level, msg);
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1) {
+        if (acquire(tag, level, format)) {
+            delegate.log(tag, level, format, arg1);
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1, Object arg2) {
+        if (acquire(tag, level, format)) {
+            delegate.log(tag, level, format, arg1, arg2);
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object... args) {
+        if (acquire(tag, level, format)) {
+            delegate.log(tag, level, format, args);
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg, Throwable t) {
+        if (acquire(tag, level, msg)) {
+            delegate.log(tag, level, msg, t);
+        }
+    }
+
+    private boolean acquire(String tag, Level level, String format) {
+        val counter = counterOf(tag, format);
+        if (counter == null) {
+            return true;
+        }
+        val now = System.currentTimeMillis();
+        val start = counter.periodStart;
+        if (now - start >= periodMillis && Counter.PERIOD_START.compareAndSet(counter, start, now)) {
+            report(tag, format, counter);
+            counter.count.set(0);
+        }
+        counter.level = level;
+        val n = counter.count.incrementAndGet();
+        if (n <= burst || sampleRate > 0 && (n - burst) % sampleRate == 0) {
+            return true;
+        }
+        counter.suppressed.incrementAndGet();
+        suppressedCount.increment();
+        return false;
+    }
+
+    private Counter counterOf(String tag, String format) {
+        val tagKey = tag != null ? tag : NULL_KEY;
+        val formatKey = format != null ? format : NULL_KEY;
+        while (true) {
+            ConcurrentMap<String, Counter> formats = counters.get(tagKey);
+            if (formats == null) {
+                formats = counters.computeIfAbsent(tagKey, k -> new ConcurrentHashMap<>());
+            }
+            Counter counter = formats.get(formatKey);
+            if (counter != null) {
+                return counter;
+            }
+            if (keyCount.get() >= maxKeys) {
+                return null;
+            }
+            counter = new Counter(System.currentTimeMillis());
+            val last = formats.putIfAbsent(formatKey, counter);
+            if (last != null) {
+                return last;
+            }
+            keyCount.incrementAndGet();
+            if (counters.get(tagKey) == formats) {
+                return counter;
+            }
+            // formats was evicted by sweep meanwhile, retry with the new one
+            if (formats.remove(formatKey, counter)) {
+                keyCount.decrementAndGet();
+            }
+        }
+    }
+
+    private void report(String tagKey, String formatKey, Counter counter) {
+        val n = counter.suppressed.getAndSet(0);
+        if (n > 0) {
+            delegate.log(tagKey != NULL_KEY ? tagKey : null, counter.level, "suppressed {0} messages: {1}", n, formatKey);
+        }
+    }
+
+    /**
+     * Reports and resets counters whose period ended, evicts counters idle in the whole period.
+     */
+    private void sweep() {
+        val now = System.currentTimeMillis();
+        for (val e : counters.entrySet()) {
+            val formats = e.getValue();
+            for (val f : formats.entrySet()) {
+                val counter = f.getValue();
+                val start = counter.periodStart;
+                if (now - start >= periodMillis && Counter.PERIOD_START.compareAndSet(counter, start, now)) {
+                    report(e.getKey(), f.getKey(), counter);
+                    if (counter.count.getAndSet(0) == 0 && formats.remove(f.getKey(), counter)) {
+                        keyCount.decrementAndGet();
+                    }
+                }
+            }
+            if (formats.isEmpty()) {
+                counters.remove(e.getKey(), formats);
+            }
+        }
+    }
+
+    /**
+     * Reports all suppressed messages and flushes delegate if it's flushable.
+     */
+    @Override
+    public void flush() {
+        for (val e : counters.entrySet()) {
+            for (val f : e.getValue().entrySet()) {
+                report(e.getKey(), f.getKey(), f.getValue());
+            }
+        }
+        if (delegate instanceof Flushable) {
+            try {
+                ((Flushable) delegate).flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the background sweep and reports all suppressed messages.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        flush();
+    }
+
+    private static final class Counter {
+        static final AtomicLongFieldUpdater<Counter> PERIOD_START =
+                AtomicLongFieldUpdater.newUpdater(Counter.class, "periodStart");
+
+        volatile long periodStart;
+        volatile Level level = Level.INFO;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong suppressed = new AtomicLong();
+
+        Counter(long periodStart) {
+            this.periodStart = periodStart;
+        }
+    }
+}
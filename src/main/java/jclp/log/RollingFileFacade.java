@@ -0,0 +1,532 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.log;
+
+import jclp.Validate;
+import jclp.io.IOUtils;
+import jclp.io.ZLibUtils;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * Facade writing messages to a file, rotated by size or time.
+ * <p>
+ * Lines are encoded in the logging thread and appended to a buffer in front of a {@code FileChannel},
+ * the buffer is written when full, on {@code WARN} and more severe messages, and periodically.
+ * <p>
+ * Rotation only closes and renames the active file to {@code <name>.<yyyyMMdd-HHmmss>}. Compressing
+ * rotated files with ZLIB (suffix {@code .z}) and deleting files exceeding retention limits are
+ * done by a background thread, so logging threads never wait for them.
+ */
+public class RollingFileFacade implements Facade, Flushable, Closeable {
+    public static final long DEFAULT_MAX_FILE_SIZE = 10 << 20;
+
+    public static final String COMPRESSED_SUFFIX = ".z";
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final int BUFFER_SIZE = 0x10000;
+
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(Output::new);
+
+    @Getter
+    private final File file;
+
+    /**
+     * Max size of the active file before rotating, {@literal 0} to disable.
+     */
+    @Getter
+    private final long maxFileSize;
+
+    /**
+     * Interval of time rotation in milliseconds, aligned to local midnight, {@literal 0} to disable.
+     */
+    @Getter
+    private final long rollingInterval;
+
+    @Getter
+    private final Charset charset;
+
+    /**
+     * Max number of rotated files kept, {@literal 0} for no limit.
+     */
+    @Getter
+    @Setter
+    private volatile int maxHistory = 7;
+
+    /**
+     * Max total size of rotated files kept, {@literal 0} for no limit.
+     */
+    @Getter
+    @Setter
+    private volatile long maxTotalSize = 0;
+
+    /**
+     * Whether rotated files are compressed.
+     */
+    @Getter
+    @Setter
+    private volatile boolean compress = true;
+
+    @Getter
+    @Setter
+    private volatile int compressionLevel = Deflater.BEST_SPEED;
+
+    private final Pattern rotatedName;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ScheduledExecutorService background;
+
+    private FileChannel channel;
+    private long size;
+    private long nextRollTime;
+    private boolean closed;
+
+    public RollingFileFacade(File file) throws IOException {
+        this(file, DEFAULT_MAX_FILE_SIZE, TimeUnit.DAYS.toMillis(1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Constructs facade appending to specified file.
+     *
+     * @param file            the active log file
+     * @param maxFileSize     max size of the active file, {@literal 0} to disable size rotation
+     * @param rollingInterval interval of time rotation in milliseconds, {@literal 0} to disable
+     * @param charset         charset of the file
+     * @throws IOException if occur I/O errors when opening the file
+     */
+    public RollingFileFacade(@NonNull File file, long maxFileSize, long rollingInterval, @NonNull Charset charset)
+            throws IOException {
+        Validate.require(maxFileSize >= 0, "maxFileSize must >= 0");
+        Validate.require(rollingInterval >= 0, "rollingInterval must >= 0");
+        this.file = file.getAbsoluteFile();
+        this.maxFileSize = maxFileSize;
+        this.rollingInterval = rollingInterval;
+        this.charset = charset;
+        rotatedName = Pattern.compile(Pattern.quote(this.file.getName())
+                + "\\.\\d{8}-\\d{6}(-\\d+)?(" + Pattern.quote(COMPRESSED_SUFFIX) + ")?");
+        val dir = this.file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("cannot create directory: " + dir);
+        }
+        open();
+        val executor = new ScheduledThreadPoolExecutor(1, r -> {
+            val thread = new Thread(r, "RollingFileFacade");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // close() cancels the periodic flush but lets queued archiving finish
+        executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(true);
+        background = executor;
+        background.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        background.execute(this::archive); // left by last run
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        nextRollTime = nextRollTime(System.currentTimeMillis());
+    }
+
+    private long nextRollTime(long now) {
+        if (rollingInterval == 0) {
+            return Long.MAX_VALUE;
+        }
+        val offset = TimeZone.getDefault().getOffset(now);
+        return ((now + offset) / rollingInterval + 1) * rollingInterval - offset;
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg) {
+        val out = acquire();
+        try {
+            header(out, tag, level).append(msg);
+            write(level, out);
+        } finally {
+            out.busy = false;
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1) {
+        val out = acquire();
+        try {
+            MessagePattern.of(format).appendTo(header(out, tag, level), 1, arg1, null, null);
+            write(level, out);
+        } finally {
+            out.busy = false;
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object arg1, Object arg2) {
+        val out = acquire();
+        try {
+            MessagePattern.of(format).appendTo(header(out, tag, level), 2, arg1, arg2, null);
+            write(level, out);
+        } finally {
+            out.busy = false;
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String format, Object... args) {
+        val out = acquire();
+        try {
+            MessagePattern.of(format).appendTo(header(out, tag, level), args != null ? args.length : 0, null, null, args);
+            write(level, out);
+        } finally {
+            out.busy = false;
+        }
+    }
+
+    @Override
+    public void log(String tag, Level level, String msg, Throwable t) {
+        val out = acquire();
+        try {
+            header(out, tag, level).append(msg).append(LINE_SEPARATOR);
+            val sw = new StringWriter();
+            t.printStackTrace(new PrintWriter(sw));
+            out.sb.append(sw.getBuffer());
+            out.sb.setLength(out.sb.length() - LINE_SEPARATOR.length());
+            write(level, out);
+        } finally {
+            out.busy = false;
+        }
+    }
+
+    /**
+     * Gets output of current thread, or a new one if it's in use by an outer call,
+     * e.g. {@code toString()} of an argument logs too.
+     */
+    private Output acquire() {
+        val out = outputs.get();
+        if (out.busy) {
+            return new Output();
+        }
+        out.busy = true;
+        return out;
+    }
+
+    private StringBuilder header(Output out, String tag, Level level) {
+        val sb = out.sb;
+        sb.setLength(0);
+        return out.appendTimestamp(sb).append(" [").append(Log.getThreadName()).append("] ")
+                .append((char) (level.name().charAt(0) + 32)).append('/').append(tag).append(": ");
+    }
+
+    private void write(Level level, Output out) {
+        out.sb.append(LINE_SEPARATOR);
+        val bytes = out.encode(charset);
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            val pending = size + buffer.position();
+            if (System.currentTimeMillis() >= nextRollTime
+                    || maxFileSize > 0 && pending > 0 && pending + bytes.remaining() > maxFileSize) {
+                rotate();
+            }
+            while (bytes.hasRemaining()) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                val n = Math.min(bytes.remaining(), buffer.remaining());
+                val limit = bytes.limit();
+                bytes.limit(bytes.position() + n);
+                buffer.put(bytes);
+                bytes.limit(limit);
+            }
+            if (level.getCode() <= Level.WARN.getCode()) {
+                drain();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Renames the active file and opens a new one, the rest is left to background.
+     */
+    private void rotate() throws IOException {
+        drain();
+        channel.close();
+        if (size > 0) {
+            val target = rotatedFile();
+            if (!file.renameTo(target)) {
+                System.err.println("cannot rename " + file + " to " + target);
+            }
+            if (!background.isShutdown()) {
+                background.execute(this::archive);
+            }
+        }
+        open();
+    }
+
+    private File rotatedFile() {
+        val base = file.getPath() + '.' + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        File target = new File(base);
+        for (int i = 1; target.exists() || new File(target.getPath() + COMPRESSED_SUFFIX).exists(); ++i) {
+            target = new File(base + '-' + i);
+        }
+        return target;
+    }
+
+    /**
+     * Returns rotated files sorted from oldest to newest.
+     * <p>
+     * Only files named by rotation, {@code <name>.yyyyMMdd-HHmmss[-N][.z]}, are included.
+     */
+    public File[] getRotatedFiles() {
+        val files = file.getParentFile().listFiles((dir, name) -> rotatedName.matcher(name).matches());
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> {
+            val c = Long.compare(a.lastModified(), b.lastModified());
+            return c != 0 ? c : a.getName().compareTo(b.getName());
+        });
+        return files;
+    }
+
+    /**
+     * Compresses rotated files and applies retention limits, run in background thread.
+     */
+    private void archive() {
+        val kept = new ArrayList<File>();
+        for (File f : getRotatedFiles()) {
+            if (compress && !f.getName().endsWith(COMPRESSED_SUFFIX)) {
+                try {
+                    f = compress(f);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            kept.add(f);
+        }
+        long total = 0;
+        for (val f : kept) {
+            total += f.length();
+        }
+        val history = maxHistory;
+        val totalLimit = maxTotalSize;
+        for (int i = 0, n = kept.size(); i < n; ++i) {
+            if ((history <= 0 || n - i <= history) && (totalLimit <= 0 || total <= totalLimit)) {
+                break;
+            }
+            val f = kept.get(i);
+            total -= f.length();
+            if (!f.delete()) {
+                System.err.println("cannot delete " + f);
+            }
+        }
+    }
+
+    private File compress(File source) throws IOException {
+        val target = new File(source.getPath() + COMPRESSED_SUFFIX);
+        val tmp = new File(target.getPath() + ".tmp");
+        val pool = IOUtils.getBufferPool();
+        val b = pool.acquireBytes(BUFFER_SIZE);
+        try (val in = new FileInputStream(source); val out = new FileOutputStream(tmp);
+             val compressor = ZLibUtils.compressor(IOUtils.writingFor(out), compressionLevel)) {
+            int n;
+            while ((n = in.read(b, 0, BUFFER_SIZE)) != -1) {
+                compressor.write(b, 0, n);
+            }
+        } finally {
+            pool.releaseBytes(b);
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("cannot rename " + tmp + " to " + target);
+        }
+        target.setLastModified(source.lastModified());
+        if (!source.delete()) {
+            System.err.println("cannot delete " + source);
+        }
+        return target;
+    }
+
+    /**
+     * Rotates the active file immediately.
+     */
+    public void rollover() {
+        lock.lock();
+        try {
+            if (!closed) {
+                rotate();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes buffered lines to the file.
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            if (!closed && buffer.position() > 0) {
+                drain();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes buffered lines, closes the file and waits for pending background work.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+        background.shutdown();
+        try {
+            background.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Output {
+        private final StringBuilder sb = new StringBuilder(256);
+        private boolean busy;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.");
+        private final Date date = new Date();
+        private long lastSecond = -1;
+        private String lastSeconds;
+        private CharsetEncoder encoder;
+        private char[] chars = new char[256];
+        private CharBuffer cb = CharBuffer.wrap(chars);
+        private ByteBuffer bb = ByteBuffer.allocate(1024);
+
+        StringBuilder appendTimestamp(StringBuilder sb) {
+            val now = System.currentTimeMillis();
+            if (now / 1000 != lastSecond) { // format date and time once per second
+                lastSecond = now / 1000;
+                date.setTime(now);
+                lastSeconds = dateFormat.format(date);
+            }
+            val millis = (int) (now % 1000);
+            return sb.append(lastSeconds).append((char) ('0' + millis / 100))
+                    .append((char) ('0' + millis / 10 % 10)).append((char) ('0' + millis % 10));
+        }
+
+        ByteBuffer encode(Charset charset) {
+            if (encoder == null || !encoder.charset().equals(charset)) {
+                encoder = charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            val length = sb.length();
+            if (length > chars.length) {
+                chars = new char[Math.max(length, chars.length << 1)];
+                cb = CharBuffer.wrap(chars);
+            }
+            sb.getChars(0, length, chars, 0);
+            cb.clear();
+            cb.limit(length);
+            encoder.reset();
+            if (bb.capacity() > 8192) { // release big buffer
+                bb = ByteBuffer.allocate(1024);
+            }
+            bb.clear();
+            boolean flushed = false;
+            while (true) {
+                val result = flushed ? encoder.flush(bb) : encoder.encode(cb, bb, true);
+                if (result.isOverflow()) {
+                    val bigger = ByteBuffer.allocate(bb.capacity() << 1);
+                    bb.flip();
+                    bb = bigger.put(bb);
+                } else if (!flushed) {
+                    flushed = true;
+                } else {
+                    break;
+                }
+            }
+            bb.flip();
+            if (sb.capacity() > 8192) { // release big buffer
+                sb.setLength(256);
+                sb.trimToSize();
+            }
+            return bb;
+        }
+    }
+}
@@ -23,5 +23,14 @@ public interface VdmEntry {
 
     long lastModified();
 
+    /**
+     * Gets size of the entry content.
+     *
+     * @return the size in bytes, <code>-1</code> if unknown
+     */
+    default long getSize() {
+        return -1;
+    }
+
     boolean isDirectory();
 }
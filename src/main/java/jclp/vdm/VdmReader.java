@@ -16,6 +16,8 @@
 
 package jclp.vdm;
 
+import jclp.io.IOUtils;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +32,19 @@ public interface VdmReader extends Closeable {
 
     InputStream getInputStream(VdmEntry entry) throws IOException;
 
+    /**
+     * Reads all content of specified entry, using its size if known.
+     *
+     * @param entry the entry
+     * @return the bytes
+     * @throws IOException if occur I/O errors
+     */
+    default byte[] getBytes(VdmEntry entry) throws IOException {
+        try (InputStream in = getInputStream(entry)) {
+            return IOUtils.toBytes(in, entry.getSize());
+        }
+    }
+
     Iterator<? extends VdmEntry> entries();
 
     int size();
@@ -55,6 +55,11 @@ class FileVdmEntry implements VdmEntry {
         return file.lastModified();
     }
 
+    @Override
+    public long getSize() {
+        return file.isFile() ? file.length() : -1;
+    }
+
     @Override
     public boolean isDirectory() {
         return file.isDirectory();
@@ -66,6 +66,16 @@ public class FileVdmReader implements VdmReader {
         return stream;
     }
 
+    @Override
+    public byte[] getBytes(@NonNull VdmEntry entry) throws IOException {
+        require(entry instanceof FileVdmEntry, "Invalid entry: %s", entry);
+        val fve = (FileVdmEntry) entry;
+        require(fve.reader == this, "Invalid entry: %s", entry);
+        try (val in = new FileInputStream(fve.file)) {
+            return IOUtils.toBytes(in, fve.file.length());
+        }
+    }
+
     private int walkDirectory(File dir, Consumer<File> action) {
         val items = dir.list();
         if (items == null || items.length == 0) {
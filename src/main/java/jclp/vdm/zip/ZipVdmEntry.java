@@ -50,6 +50,11 @@ class ZipVdmEntry implements VdmEntry {
         return entry.getTime();
     }
 
+    @Override
+    public long getSize() {
+        return entry.getSize();
+    }
+
     @Override
     public boolean isDirectory() {
         return entry.isDirectory();
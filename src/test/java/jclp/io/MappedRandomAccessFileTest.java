@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Peng Wan <phylame@163.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jclp.io;
+
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+public class MappedRandomAccessFileTest {
+    public static void main(String[] args) throws IOException {
+        writePastShortWindow();
+        System.out.println("MappedRandomAccessFileTest passed");
+    }
+
+    /**
+     * Writes past the end of a window mapped short for reading.
+     */
+    private static void writePastShortWindow() throws IOException {
+        val file = File.createTempFile("mraf", ".bin");
+        file.deleteOnExit();
+        try (val raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(100);
+        }
+        val data = new byte[100];
+        Arrays.fill(data, (byte) 7);
+        try (val mraf = new MappedRandomAccessFile(file, "rw", 12)) {
+            check(mraf.read(0L) == 0, "read(0)");
+            mraf.seek(50);
+            mraf.write(data);
+            check(mraf.length() == 150, "length after write");
+        }
+        check(file.length() == 150, "file length after close");
+        try (val mraf = new MappedRandomAccessFile(file, "r", 12)) {
+            val b = new byte[150];
+            check(mraf.read(b) == 150, "read all");
+            for (int i = 0; i < 150; ++i) {
+                check(b[i] == (i < 50 ? 0 : 7), "byte at " + i);
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}